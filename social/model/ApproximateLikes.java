@@ -0,0 +1,150 @@
+package social.model;
+
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Estimation de taille fixe du nombre de likers d'un Post, utilisée au-delà
+ * d'un certain nombre de likes (voir SimplePost.setApproximateLikeThreshold(int)).
+ *
+ * Le nombre de likers est estimé par un sketch HyperLogLog de REGISTER_NB
+ * registres de 8 bits (4 Ko), dont l'erreur relative type est 1,04 /
+ * sqrt(REGISTER_NB), soit environ 1,6%, quel que soit le nombre de likers.
+ * L'appartenance d'un User n'est pas mémorisée ici: au-delà du seuil, elle est
+ * testée dans l'index des Post likés de cet User (voir
+ * User.recordLikeIfAbsent(Post)), et non dans un filtre de taille fixe, qui
+ * saturerait précisément pour les Post très likés auxquels ce mode est
+ * destiné.
+ *
+ * Les ajouts et les lectures peuvent être effectués simultanément depuis
+ * plusieurs threads sans verrou, les registres étant modifiés par
+ * compareAndSet. L'estimation n'est recalculée que lorsqu'un registre a changé
+ * depuis le dernier calcul, ce qui devient rare à mesure que les registres
+ * croissent.
+ */
+final class ApproximateLikes {
+	/**
+	 * Nombre de bits d'index des registres du sketch HyperLogLog.
+	 */
+	static final int PRECISION = 12;
+	/**
+	 * Nombre de registres du sketch HyperLogLog.
+	 */
+	static final int REGISTER_NB = 1 << PRECISION;
+
+	private static final double ALPHA = 0.7213 / (1 + 1.079 / REGISTER_NB);
+
+	// Registres de 8 bits, quatre par case
+	private final AtomicIntegerArray registers;
+	// Nombre de modifications des registres, et dernière estimation calculée
+	private final AtomicLong registerVersion;
+	private volatile Estimate lastEstimate;
+
+	/**
+	 * Initialise un sketch vide.
+	 *
+	 * @ensures estimate() == 0;
+	 */
+	ApproximateLikes() {
+		this.registers = new AtomicIntegerArray(REGISTER_NB / 4);
+		this.registerVersion = new AtomicLong();
+		this.lastEstimate = new Estimate(0, 0);
+	}
+
+	/**
+	 * Ajoute l'identifiant spécifié au sketch. Ajouter plusieurs fois un même
+	 * identifiant ne modifie pas l'estimation.
+	 *
+	 * @param id l'identifiant à ajouter
+	 */
+	void add(int id) {
+		long hash = mix(id);
+		updateRegister((int) (hash >>> 64 - PRECISION),
+				Math.min(Long.numberOfLeadingZeros(hash << PRECISION), 64 - PRECISION) + 1);
+	}
+
+	/**
+	 * Renvoie l'estimation HyperLogLog du nombre d'identifiants distincts ajoutés
+	 * au sketch.
+	 *
+	 * @return le nombre estimé d'identifiants distincts
+	 *
+	 * @ensures \result >= 0;
+	 *
+	 * @pure
+	 */
+	long estimate() {
+		Estimate last = lastEstimate;
+		long version = registerVersion.get();
+		if (last.version == version) {
+			return last.value;
+		}
+		// Une modification ultérieure des registres changera la version
+		long value = computeEstimate();
+		lastEstimate = new Estimate(version, value);
+		return value;
+	}
+
+	private long computeEstimate() {
+		double sum = 0;
+		int zeros = 0;
+		for (int i = 0; i < REGISTER_NB / 4; i++) {
+			int word = registers.get(i);
+			for (int shift = 0; shift < 32; shift += 8) {
+				int rank = word >>> shift & 0xFF;
+				sum += Math.scalb(1.0, -rank);
+				if (rank == 0) {
+					zeros++;
+				}
+			}
+		}
+		double estimate = ALPHA * REGISTER_NB * REGISTER_NB / sum;
+		if (estimate <= 2.5 * REGISTER_NB && zeros > 0) {
+			// Correction des petits effectifs (comptage linéaire)
+			estimate = REGISTER_NB * Math.log((double) REGISTER_NB / zeros);
+		}
+		return Math.round(estimate);
+	}
+
+	/**
+	 * Remplace la valeur du registre spécifié par rank si elle lui est inférieure.
+	 */
+	private void updateRegister(int register, int rank) {
+		int i = register >>> 2;
+		int shift = (register & 3) * 8;
+		int word = registers.get(i);
+		while ((word >>> shift & 0xFF) < rank) {
+			int updated = word & ~(0xFF << shift) | rank << shift;
+			if (registers.compareAndSet(i, word, updated)) {
+				registerVersion.incrementAndGet();
+				return;
+			}
+			word = registers.get(i);
+		}
+	}
+
+	/**
+	 * Une estimation et la version des registres à partir de laquelle elle a été
+	 * calculée.
+	 */
+	private static final class Estimate {
+		private final long version;
+		private final long value;
+
+		Estimate(long version, long value) {
+			this.version = version;
+			this.value = value;
+		}
+	}
+
+	/**
+	 * Fonction de mélange de SplitMix64: les identifiants étant denses, leurs bits
+	 * doivent être dispersés avant d'indexer les registres.
+	 */
+	private static long mix(long x) {
+		x += 0x9E3779B97F4A7C15L;
+		x = (x ^ x >>> 30) * 0xBF58476D1CE4E5B9L;
+		x = (x ^ x >>> 27) * 0x94D049BB133111EBL;
+		return x ^ x >>> 31;
+	}
+}
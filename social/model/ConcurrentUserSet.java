@@ -0,0 +1,659 @@
+package social.model;
+
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.ListIterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * Un ensemble d'User pouvant être enrichi simultanément depuis plusieurs
+ * threads, utilisé pour les likers des Post.
+ *
+ * Tant qu'il compte au plus SPLIT_SIZE éléments, l'ensemble est un tableau trié
+ * des identifiants des User (voir User.getId()), créé à son premier ajout: un
+ * ensemble vide n'occupe qu'un objet sans tableau, et un ensemble de quelques
+ * éléments moins qu'un HashSet. Ce tableau n'est jamais modifié: chaque ajout,
+ * effectué sous le verrou de l'ensemble, le remplace par une copie augmentée,
+ * de sorte que les lectures ne prennent aucun verrou. Au-delà de SPLIT_SIZE
+ * éléments, les identifiants sont répartis entre STRIPE_NB sous-ensembles
+ * selon leurs bits de poids faible: le sous-ensemble d'index id % STRIPE_NB
+ * mémorise id / STRIPE_NB dans un UserBitmap, de sorte que chaque sous-ensemble
+ * reste dense et compressé. Chaque sous-ensemble a son propre StampedLock: des
+ * ajouts simultanés ne se bloquent que s'ils concernent le même sous-ensemble,
+ * et les lectures (contains, itération) se font en lecture optimiste, sans
+ * verrou, et ne prennent le verrou en lecture que si un ajout simultané au même
+ * sous-ensemble les a invalidées.
+ *
+ * Le nombre d'éléments de chaque sous-ensemble est un compteur atomique
+ * incrémenté sous son verrou après chaque ajout effectif: size() ne prend aucun
+ * verrou et ne ralentit pas les ajouts, mais n'est exact qu'en l'absence
+ * d'ajouts simultanés.
+ *
+ * Les itérateurs énumèrent les User par ordre croissant d'identifiant. Ils
+ * sont faiblement cohérents: ils ne lèvent jamais de
+ * ConcurrentModificationException et énumèrent les éléments ajoutés pendant
+ * l'itération s'ils se trouvent au-delà de la position courante.
+ *
+ * @invariant size() >= 0;
+ * @invariant !contains(null);
+ */
+final class ConcurrentUserSet extends AbstractSet<User> {
+	/**
+	 * Nombre de sous-ensembles (puissance de 2).
+	 */
+	static final int STRIPE_NB = 16;
+	/**
+	 * Nombre d'éléments au-delà duquel l'ensemble est réparti entre STRIPE_NB
+	 * sous-ensembles.
+	 */
+	static final int SPLIT_SIZE = 64;
+	private static final int STRIPE_SHIFT = Integer.numberOfTrailingZeros(STRIPE_NB);
+	// Nombre de bits des identifiants locaux d'un sous-ensemble
+	private static final int LOCAL_BITS = 31 - STRIPE_SHIFT;
+	private static final int LOCAL_MASK = (1 << LOCAL_BITS) - 1;
+	// Écart entre les compteurs de deux sous-ensembles, afin qu'ils n'occupent
+	// pas la même ligne de cache
+	private static final int COUNT_SPACING = 16;
+
+	// Identifiants triés avant la répartition (null si vide ou après la
+	// répartition), remplacés sous le verrou de cet ensemble
+	private volatile int[] single;
+	// Sous-ensembles après la répartition, null avant
+	private volatile Stripes stripes;
+
+	/**
+	 * Initialise un ConcurrentUserSet vide.
+	 *
+	 * @ensures isEmpty();
+	 */
+	ConcurrentUserSet() {
+		this.single = null;
+		this.stripes = null;
+	}
+
+	@Override
+	public int size() {
+		Stripes striped = stripes;
+		if (striped != null) {
+			return striped.size();
+		}
+		int[] ids = single;
+		if (ids == null) {
+			// Ensemble vide, ou répartition survenue depuis la lecture de stripes
+			striped = stripes;
+			return striped == null ? 0 : striped.size();
+		}
+		return ids.length;
+	}
+
+	@Override
+	public boolean contains(Object o) {
+		return o instanceof User && containsId(((User) o).getId());
+	}
+
+	/**
+	 * Ajoute l'User spécifié à cet ensemble.
+	 *
+	 * @param u l'User à ajouter
+	 *
+	 * @return true si l'User ne faisait pas déjà partie de cet ensemble
+	 *
+	 * @throws NullPointerException si u est null
+	 *
+	 * @ensures contains(u);
+	 */
+	@Override
+	public boolean add(User u) {
+		return addId(u.getId());
+	}
+
+	/**
+	 * Renvoie true si cet ensemble contient l'User d'identifiant spécifié.
+	 *
+	 * @param id l'identifiant cherché
+	 *
+	 * @return true si cet ensemble contient l'User d'identifiant spécifié
+	 *
+	 * @requires id >= 0;
+	 *
+	 * @pure
+	 */
+	boolean containsId(int id) {
+		Stripes striped = stripes;
+		if (striped == null) {
+			int[] ids = single;
+			if (ids != null) {
+				return Arrays.binarySearch(ids, id) >= 0;
+			}
+			striped = stripes;
+			if (striped == null) {
+				return false;
+			}
+		}
+		return striped.containsId(id);
+	}
+
+	/**
+	 * Ajoute l'identifiant spécifié à cet ensemble. Après la répartition, seul le
+	 * sous-ensemble de cet identifiant est verrouillé.
+	 *
+	 * @param id l'identifiant à ajouter
+	 *
+	 * @return true si l'identifiant ne faisait pas déjà partie de cet ensemble
+	 *
+	 * @requires id >= 0;
+	 * @ensures containsId(id);
+	 */
+	boolean addId(int id) {
+		Stripes striped = stripes;
+		if (striped == null) {
+			synchronized (this) {
+				striped = stripes;
+				if (striped == null) {
+					int[] ids = single == null ? new int[0] : single;
+					int i = Arrays.binarySearch(ids, id);
+					if (i >= 0) {
+						return false;
+					}
+					i = -i - 1;
+					int[] copy = new int[ids.length + 1];
+					System.arraycopy(ids, 0, copy, 0, i);
+					copy[i] = id;
+					System.arraycopy(ids, i, copy, i + 1, ids.length - i);
+					publishSingle(copy);
+					return true;
+				}
+			}
+		}
+		return striped.addId(id);
+	}
+
+	/**
+	 * Ajoute à cet ensemble les n premiers identifiants du tableau spécifié et
+	 * renvoie le nombre d'identifiants nouveaux. Les identifiants sont regroupés
+	 * par sous-ensemble et triés (le tableau est modifié): chaque sous-ensemble
+	 * concerné n'est verrouillé qu'une fois pour l'ensemble du lot, et son
+	 * compteur n'est incrémenté qu'une fois. Au retour, les identifiants nouveaux
+	 * occupent les cases ids[0] à ids[\result - 1].
+	 *
+	 * @param ids les identifiants à ajouter
+	 * @param n   nombre d'identifiants à ajouter
+	 *
+	 * @return le nombre d'identifiants ne faisant pas déjà partie de cet ensemble
+	 *
+	 * @requires n >= 0 && n <= ids.length;
+	 * @requires (\forall int i; i >= 0 && i < n; ids[i] >= 0);
+	 * @ensures (\forall int i; i >= 0 && i < n; containsId(\old(ids[i])));
+	 */
+	int addIds(int[] ids, int n) {
+		Stripes striped = stripes;
+		if (striped == null) {
+			synchronized (this) {
+				striped = stripes;
+				if (striped == null) {
+					return addSingleIds(ids, n);
+				}
+			}
+		}
+		return striped.addIds(ids, n);
+	}
+
+	/**
+	 * Ajoute au tableau trié les n premiers identifiants du tableau spécifié, en
+	 * une seule copie, et renvoie le nombre d'identifiants nouveaux, placés en
+	 * tête de ids. Appelée sous le verrou de cet ensemble, avant la répartition.
+	 */
+	private int addSingleIds(int[] ids, int n) {
+		int[] old = single == null ? new int[0] : single;
+		Arrays.sort(ids, 0, n);
+		int[] merged = new int[old.length + n];
+		int added = 0;
+		int m = 0;
+		int j = 0;
+		for (int i = 0; i < n; i++) {
+			int id = ids[i];
+			if (i > 0 && id == ids[i - 1]) {
+				continue;
+			}
+			while (j < old.length && old[j] < id) {
+				merged[m++] = old[j++];
+			}
+			if (j < old.length && old[j] == id) {
+				continue;
+			}
+			merged[m++] = id;
+			// added <= i: les identifiants restant à examiner ne sont pas écrasés
+			ids[added++] = id;
+		}
+		while (j < old.length) {
+			merged[m++] = old[j++];
+		}
+		if (added > 0) {
+			publishSingle(Arrays.copyOf(merged, m));
+		}
+		return added;
+	}
+
+	/**
+	 * Publie le tableau trié spécifié comme contenu de cet ensemble, ou le
+	 * répartit entre STRIPE_NB sous-ensembles s'il dépasse SPLIT_SIZE éléments.
+	 * Appelée sous le verrou de cet ensemble.
+	 */
+	private void publishSingle(int[] ids) {
+		if (ids.length <= SPLIT_SIZE) {
+			single = ids;
+			return;
+		}
+		Stripes striped = new Stripes();
+		for (int id : ids) {
+			striped.addId(id);
+		}
+		// Les ajouts ultérieurs, y compris ceux en attente du verrou de cet
+		// ensemble, sont effectués dans les sous-ensembles; un lecteur trouvant
+		// single à null relit stripes
+		stripes = striped;
+		single = null;
+	}
+
+	/**
+	 * Renvoie l'index dans le tableau trié spécifié du plus petit identifiant
+	 * supérieur ou égal à from, ou ids.length s'il n'en existe pas.
+	 */
+	private static int ceilingIndex(int[] ids, int from) {
+		int i = Arrays.binarySearch(ids, from);
+		return i >= 0 ? i : -i - 1;
+	}
+
+	/**
+	 * Renvoie le plus petit identifiant de cet ensemble supérieur ou égal à from,
+	 * ou -1 s'il n'en existe pas.
+	 */
+	int nextId(int from) {
+		Stripes striped = stripes;
+		if (striped == null) {
+			int[] ids = single;
+			if (ids != null) {
+				int i = ceilingIndex(ids, from);
+				return i < ids.length ? ids[i] : -1;
+			}
+			striped = stripes;
+			if (striped == null) {
+				return -1;
+			}
+		}
+		int result = -1;
+		for (int s = 0; s < STRIPE_NB; s++) {
+			int id = striped.nextId(s, from);
+			if (id >= 0 && (result < 0 || id < result)) {
+				result = id;
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Renvoie le plus grand identifiant de cet ensemble inférieur ou égal à from,
+	 * ou -1 s'il n'en existe pas.
+	 */
+	int previousId(int from) {
+		Stripes striped = stripes;
+		if (striped == null) {
+			int[] ids = single;
+			if (ids != null) {
+				int i = Arrays.binarySearch(ids, from);
+				i = i >= 0 ? i : -i - 2;
+				return i >= 0 ? ids[i] : -1;
+			}
+			striped = stripes;
+			if (striped == null) {
+				return -1;
+			}
+		}
+		int result = -1;
+		for (int s = 0; s < STRIPE_NB && s <= from; s++) {
+			result = Math.max(result, striped.previousId(s, from));
+		}
+		return result;
+	}
+
+	/**
+	 * Renvoie une estimation du nombre d'octets occupés par cet ensemble.
+	 *
+	 * @return une estimation de la taille mémoire de cet ensemble
+	 *
+	 * @pure
+	 */
+	long sizeInBytes() {
+		Stripes striped = stripes;
+		if (striped == null) {
+			int[] ids = single;
+			if (ids != null) {
+				return 24L + 16L + 4L * ids.length;
+			}
+			striped = stripes;
+			if (striped == null) {
+				return 24L;
+			}
+		}
+		return 24L + striped.sizeInBytes();
+	}
+
+	@Override
+	public Iterator<User> iterator() {
+		return listIterator();
+	}
+
+	/**
+	 * Renvoie un itérateur bidirectionnel non modifiable et faiblement cohérent
+	 * sur les User de cet ensemble, par ordre croissant d'identifiant.
+	 *
+	 * @return un itérateur sur les User de cet ensemble
+	 *
+	 * @pure
+	 */
+	ListIterator<User> listIterator() {
+		return new UserIterator();
+	}
+
+	/**
+	 * Une recherche dans un sous-ensemble, renvoyant un entier.
+	 */
+	@FunctionalInterface
+	private interface StripeQuery {
+		int apply(UserBitmap stripe, int local);
+	}
+
+	/**
+	 * Les STRIPE_NB sous-ensembles d'un ConcurrentUserSet réparti, le verrou et
+	 * le nombre d'éléments de chacun.
+	 */
+	private static final class Stripes {
+		private final UserBitmap[] bitmaps;
+		private final StampedLock[] locks;
+		private final AtomicIntegerArray counts;
+
+		Stripes() {
+			this.bitmaps = new UserBitmap[STRIPE_NB];
+			this.locks = new StampedLock[STRIPE_NB];
+			for (int s = 0; s < STRIPE_NB; s++) {
+				bitmaps[s] = new UserBitmap();
+				locks[s] = new StampedLock();
+			}
+			this.counts = new AtomicIntegerArray(STRIPE_NB * COUNT_SPACING);
+		}
+
+		/**
+		 * Applique la recherche spécifiée au sous-ensemble s en lecture optimiste:
+		 * si un ajout simultané a modifié ce sous-ensemble pendant la recherche,
+		 * son résultat (ou l'exception levée par la lecture d'un état incohérent)
+		 * est ignoré et la recherche est refaite sous le verrou en lecture. Les
+		 * recherches passées ici sont sans capture, de sorte qu'aucun objet n'est
+		 * alloué.
+		 */
+		private int read(int s, StripeQuery query, int local) {
+			UserBitmap stripe = bitmaps[s];
+			StampedLock lock = locks[s];
+			long stamp = lock.tryOptimisticRead();
+			if (stamp != 0) {
+				try {
+					int result = query.apply(stripe, local);
+					if (lock.validate(stamp)) {
+						return result;
+					}
+				} catch (RuntimeException e) {
+					// État incohérent lu pendant un ajout simultané
+				}
+			}
+			stamp = lock.readLock();
+			try {
+				return query.apply(stripe, local);
+			} finally {
+				lock.unlockRead(stamp);
+			}
+		}
+
+		/**
+		 * Renvoie le nombre d'éléments du sous-ensemble s. Ce nombre change à
+		 * chaque ajout effectif dans ce sous-ensemble.
+		 */
+		int count(int s) {
+			return counts.get(s * COUNT_SPACING);
+		}
+
+		int size() {
+			int size = 0;
+			for (int s = 0; s < STRIPE_NB; s++) {
+				size += count(s);
+			}
+			return size;
+		}
+
+		boolean containsId(int id) {
+			return read(id & STRIPE_NB - 1, (stripe, local) -> stripe.containsId(local) ? 1 : 0,
+					id >>> STRIPE_SHIFT) != 0;
+		}
+
+		boolean addId(int id) {
+			int s = id & STRIPE_NB - 1;
+			StampedLock lock = locks[s];
+			long stamp = lock.writeLock();
+			try {
+				if (!bitmaps[s].addId(id >>> STRIPE_SHIFT)) {
+					return false;
+				}
+				counts.incrementAndGet(s * COUNT_SPACING);
+				return true;
+			} finally {
+				lock.unlockWrite(stamp);
+			}
+		}
+
+		int addIds(int[] ids, int n) {
+			// Clé de tri: le sous-ensemble puis l'identifiant local
+			for (int i = 0; i < n; i++) {
+				ids[i] = (ids[i] & STRIPE_NB - 1) << LOCAL_BITS | ids[i] >>> STRIPE_SHIFT;
+			}
+			Arrays.sort(ids, 0, n);
+			int added = 0;
+			int i = 0;
+			while (i < n) {
+				int s = ids[i] >>> LOCAL_BITS;
+				int end = i;
+				while (end < n && ids[end] >>> LOCAL_BITS == s) {
+					ids[end] &= LOCAL_MASK;
+					end++;
+				}
+				StampedLock lock = locks[s];
+				int stripeAdded;
+				long stamp = lock.writeLock();
+				try {
+					stripeAdded = bitmaps[s].addIds(ids, i, end);
+					counts.addAndGet(s * COUNT_SPACING, stripeAdded);
+				} finally {
+					lock.unlockWrite(stamp);
+				}
+				// Identifiants nouveaux du sous-ensemble, remis sous forme globale
+				for (int j = 0; j < stripeAdded; j++) {
+					ids[added + j] = ids[i + j] << STRIPE_SHIFT | s;
+				}
+				added += stripeAdded;
+				i = end;
+			}
+			return added;
+		}
+
+		/**
+		 * Renvoie le plus petit identifiant du sous-ensemble s supérieur ou égal à
+		 * from, ou -1 s'il n'en existe pas.
+		 */
+		int nextId(int s, int from) {
+			// Plus petit identifiant local dont l'identifiant global est >= from
+			int local = from <= s ? 0 : (from - s - 1 >>> STRIPE_SHIFT) + 1;
+			int found = read(s, UserBitmap::nextId, local);
+			return found < 0 ? -1 : found << STRIPE_SHIFT | s;
+		}
+
+		/**
+		 * Renvoie le plus grand identifiant du sous-ensemble s inférieur ou égal à
+		 * from, ou -1 s'il n'en existe pas.
+		 *
+		 * @requires from >= s;
+		 */
+		int previousId(int s, int from) {
+			int found = read(s, UserBitmap::previousId, from - s >>> STRIPE_SHIFT);
+			return found < 0 ? -1 : found << STRIPE_SHIFT | s;
+		}
+
+		long sizeInBytes() {
+			long bytes = 2 * (16L + 4L * STRIPE_NB) + 16L + 4L * STRIPE_NB * COUNT_SPACING;
+			for (int s = 0; s < STRIPE_NB; s++) {
+				StampedLock lock = locks[s];
+				long stamp = lock.readLock();
+				try {
+					bytes += 16L + bitmaps[s].sizeInBytes() + 32L;
+				} finally {
+					lock.unlockRead(stamp);
+				}
+			}
+			return bytes;
+		}
+	}
+
+	/**
+	 * Itérateur bidirectionnel sur les User d'un ConcurrentUserSet. La position
+	 * courante est mémorisée par le plus petit identifiant situé après elle.
+	 *
+	 * Avant la répartition, le prochain identifiant est recherché dans le tableau
+	 * trié courant, sans verrou. Après, l'itérateur mémorise le prochain
+	 * identifiant de chaque sous-ensemble et son nombre d'éléments lors de sa
+	 * recherche: seul un sous-ensemble dont le nombre d'éléments a changé, ou
+	 * dont le prochain identifiant vient d'être énuméré, est de nouveau
+	 * recherché. Un élément énuméré coûte ainsi une recherche optimiste dans un
+	 * seul sous-ensemble, et la lecture sans verrou des compteurs. Un déplacement
+	 * vers l'arrière recherche le précédent élément dans chacun des
+	 * sous-ensembles.
+	 */
+	private final class UserIterator implements ListIterator<User> {
+		// Les identifiants >= cursor sont après la position courante
+		private long cursor = 0;
+		private int nextIndex = 0;
+		// Sous-ensembles auxquels se rapportent heads et seen (null: avant la
+		// répartition, le tableau trié étant alors lu directement)
+		private Stripes source = null;
+		// Prochain identifiant >= cursor de chaque sous-ensemble (ou -1), et nombre
+		// d'éléments du sous-ensemble lors de sa recherche (-1: à rechercher)
+		private final int[] heads = new int[STRIPE_NB];
+		private final int[] seen = new int[STRIPE_NB];
+
+		UserIterator() {
+			Arrays.fill(seen, -1);
+		}
+
+		private int nextId() {
+			if (cursor > Integer.MAX_VALUE) {
+				return -1;
+			}
+			int from = (int) cursor;
+			while (true) {
+				Stripes striped = stripes;
+				if (striped != source) {
+					source = striped;
+					Arrays.fill(seen, -1);
+				}
+				if (striped == null) {
+					int[] ids = single;
+					if (ids == null) {
+						if (stripes != null) {
+							// Répartition survenue depuis la lecture de stripes
+							continue;
+						}
+						return -1;
+					}
+					int i = ceilingIndex(ids, from);
+					return i < ids.length ? ids[i] : -1;
+				}
+				int result = -1;
+				for (int s = 0; s < STRIPE_NB; s++) {
+					int count = striped.count(s);
+					if (seen[s] != count) {
+						heads[s] = striped.nextId(s, from);
+						seen[s] = count;
+					}
+					if (heads[s] >= 0 && (result < 0 || heads[s] < result)) {
+						result = heads[s];
+					}
+				}
+				return result;
+			}
+		}
+
+		private int previousId() {
+			return cursor == 0 ? -1 : ConcurrentUserSet.this.previousId((int) (cursor - 1));
+		}
+
+		@Override
+		public boolean hasNext() {
+			return nextId() >= 0;
+		}
+
+		@Override
+		public User next() {
+			int id = nextId();
+			if (id < 0) {
+				throw new NoSuchElementException();
+			}
+			cursor = id + 1L;
+			// Seul le sous-ensemble de id doit être de nouveau recherché
+			if (source != null) {
+				seen[id & STRIPE_NB - 1] = -1;
+			}
+			nextIndex++;
+			return User.getUser(id);
+		}
+
+		@Override
+		public boolean hasPrevious() {
+			return previousId() >= 0;
+		}
+
+		@Override
+		public User previous() {
+			int id = previousId();
+			if (id < 0) {
+				throw new NoSuchElementException();
+			}
+			cursor = id;
+			Arrays.fill(seen, -1);
+			nextIndex--;
+			return User.getUser(id);
+		}
+
+		@Override
+		public int nextIndex() {
+			return nextIndex;
+		}
+
+		@Override
+		public int previousIndex() {
+			return nextIndex - 1;
+		}
+
+		@Override
+		public void remove() {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public void set(User u) {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public void add(User u) {
+			throw new UnsupportedOperationException();
+		}
+	}
+}
@@ -0,0 +1,163 @@
+package social.model;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Un cache LRU borné des pages de NewsFeed récemment construites pour un User,
+ * indexées par leur taille maximale et leur FeedCursor de début.
+ *
+ * Chaque page est mémorisée avec les valeurs qui la déterminent: la version
+ * des abonnements du lecteur et, pour la première page, la version de son
+ * NewsFeed (0 pour les pages suivantes, qui ne dépendent que de Post antérieurs
+ * à leur FeedCursor). La version du NewsFeed est incrémentée par chaque Post
+ * du lecteur ou d'un auteur auprès duquel il s'est inscrit en construisant la
+ * page (voir User.newsFeed(int, FeedCursor)): des versions inchangées
+ * garantissent qu'aucun auteur fusionné n'a publié depuis la construction de la
+ * page, en O(1). Une page dont l'une de ces valeurs a changé est retirée du
+ * cache au lieu d'être renvoyée.
+ *
+ * Les méthodes de cette classe sont synchronisées, le NewsFeed d'un User
+ * pouvant être lu simultanément depuis plusieurs threads.
+ *
+ * @invariant size() >= 0 && size() <= getCapacity();
+ */
+final class FeedCache {
+	private final int capacity;
+	private final Map<Key, Entry> entries;
+
+	/**
+	 * Initialise un cache vide pouvant contenir au plus capacity pages.
+	 *
+	 * @param capacity nombre maximal de pages mémorisées
+	 *
+	 * @requires capacity > 0;
+	 * @ensures size() == 0;
+	 * @ensures getCapacity() == capacity;
+	 */
+	FeedCache(int capacity) {
+		this.capacity = capacity;
+		this.entries = new LinkedHashMap<Key, Entry>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Key, Entry> eldest) {
+				return size() > FeedCache.this.capacity;
+			}
+		};
+	}
+
+	/**
+	 * Renvoie le nombre maximal de pages mémorisées par ce cache.
+	 *
+	 * @return le nombre maximal de pages mémorisées par ce cache
+	 *
+	 * @pure
+	 */
+	int getCapacity() {
+		return capacity;
+	}
+
+	/**
+	 * Renvoie le nombre de pages mémorisées par ce cache.
+	 *
+	 * @return le nombre de pages mémorisées par ce cache
+	 *
+	 * @pure
+	 */
+	synchronized int size() {
+		return entries.size();
+	}
+
+	/**
+	 * Renvoie la page mémorisée pour les paramètres spécifiés si elle a été
+	 * construite avec les mêmes versions des abonnements et du NewsFeed, null
+	 * sinon. Une page périmée est retirée du cache.
+	 *
+	 * @param limit         taille maximale de la page
+	 * @param after         position de début de la page, ou null
+	 * @param readerVersion version des abonnements du lecteur
+	 * @param feedVersion   version du NewsFeed du lecteur, ou 0
+	 *
+	 * @return la page mémorisée ou null
+	 */
+	synchronized FeedPage get(int limit, FeedCursor after, int readerVersion, int feedVersion) {
+		Key key = new Key(limit, after);
+		Entry entry = entries.get(key);
+		if (entry == null) {
+			return null;
+		}
+		if (entry.readerVersion != readerVersion || entry.feedVersion != feedVersion) {
+			entries.remove(key);
+			return null;
+		}
+		return entry.page;
+	}
+
+	/**
+	 * Mémorise la page spécifiée, construite avec les versions des abonnements et
+	 * du NewsFeed spécifiées. Si le cache est plein, la page la moins récemment
+	 * utilisée est éliminée.
+	 *
+	 * @param limit         taille maximale de la page
+	 * @param after         position de début de la page, ou null
+	 * @param readerVersion version des abonnements du lecteur
+	 * @param feedVersion   version du NewsFeed du lecteur, ou 0
+	 * @param page          la page à mémoriser
+	 *
+	 * @requires page != null;
+	 * @ensures get(limit, after, readerVersion, feedVersion) == page;
+	 */
+	synchronized void put(int limit, FeedCursor after, int readerVersion, int feedVersion, FeedPage page) {
+		entries.put(new Key(limit, after), new Entry(page, readerVersion, feedVersion));
+	}
+
+	/**
+	 * Retire toutes les pages de ce cache.
+	 *
+	 * @ensures size() == 0;
+	 */
+	synchronized void clear() {
+		entries.clear();
+	}
+
+	/**
+	 * Les paramètres d'une page: les FeedCursor, renvoyés tels quels aux
+	 * lecteurs, sont comparés par identité.
+	 */
+	private static final class Key {
+		private final int limit;
+		private final FeedCursor after;
+
+		Key(int limit, FeedCursor after) {
+			this.limit = limit;
+			this.after = after;
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (!(o instanceof Key)) {
+				return false;
+			}
+			Key other = (Key) o;
+			return limit == other.limit && after == other.after;
+		}
+
+		@Override
+		public int hashCode() {
+			return 31 * limit + System.identityHashCode(after);
+		}
+	}
+
+	private static final class Entry {
+		private final FeedPage page;
+		private final int readerVersion;
+		private final int feedVersion;
+
+		Entry(FeedPage page, int readerVersion, int feedVersion) {
+			this.page = page;
+			this.readerVersion = readerVersion;
+			this.feedVersion = feedVersion;
+		}
+	}
+}
@@ -0,0 +1,79 @@
+package social.model;
+
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * Position opaque dans le NewsFeed d'un User, permettant d'obtenir la page
+ * suivante de ce NewsFeed (voir User.newsFeed(int, FeedCursor)).
+ *
+ * Un FeedCursor mémorise, pour chaque User fusionné dans le NewsFeed, le nombre
+ * de ses Post restant à énumérer (comptés à partir du plus ancien, de sorte que
+ * la position n'est pas décalée par les Post publiés depuis), ainsi que le
+ * dernier Post énuméré et l'User qui l'a publié. Deux Post de même date étant
+ * énumérés par identifiant croissant de leur auteur (voir PullFeed.compare), ce
+ * couple suffit à reprendre l'énumération sans omettre les Post de même date
+ * que le dernier. Les instances de cette classe sont non modifiables.
+ *
+ * @invariant getLastPost() != null;
+ * @invariant getLastAuthor() != null;
+ */
+public final class FeedCursor {
+	private final Map<User, Integer> remaining;
+	private final Post lastPost;
+	private final User lastAuthor;
+
+	/**
+	 * Initialise un FeedCursor à partir du nombre de Post restant à énumérer pour
+	 * chaque User et du dernier Post énuméré.
+	 *
+	 * @param remaining  nombre de Post restant à énumérer pour chaque User
+	 * @param lastPost   le dernier Post énuméré
+	 * @param lastAuthor l'User ayant publié le dernier Post énuméré
+	 *
+	 * @requires remaining != null && lastPost != null && lastAuthor != null;
+	 */
+	FeedCursor(Map<User, Integer> remaining, Post lastPost, User lastAuthor) {
+		this.remaining = Collections.unmodifiableMap(remaining);
+		this.lastPost = lastPost;
+		this.lastAuthor = lastAuthor;
+	}
+
+	/**
+	 * Renvoie le nombre de Post de l'User spécifié restant à énumérer, comptés à
+	 * partir du plus ancien, ou -1 si cet User ne faisait pas partie du NewsFeed
+	 * lors de la création de ce FeedCursor.
+	 *
+	 * @param u un User
+	 *
+	 * @return le nombre de Post de l'User spécifié restant à énumérer ou -1
+	 *
+	 * @pure
+	 */
+	int remaining(User u) {
+		Integer n = remaining.get(u);
+		return n == null ? -1 : n;
+	}
+
+	/**
+	 * Renvoie le dernier Post énuméré avant ce FeedCursor.
+	 *
+	 * @return le dernier Post énuméré avant ce FeedCursor
+	 *
+	 * @pure
+	 */
+	public Post getLastPost() {
+		return lastPost;
+	}
+
+	/**
+	 * Renvoie l'User ayant publié le dernier Post énuméré avant ce FeedCursor.
+	 *
+	 * @return l'auteur du dernier Post énuméré avant ce FeedCursor
+	 *
+	 * @pure
+	 */
+	User getLastAuthor() {
+		return lastAuthor;
+	}
+}
@@ -0,0 +1,91 @@
+package social.model;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Compteurs du nombre de pages de NewsFeed servies selon chaque FeedPath et
+ * du nombre de pages renvoyées depuis le cache des NewsFeed. Les compteurs sont
+ * des LongAdder, de sorte que leur incrémentation par des lecteurs concurrents
+ * ne constitue pas un point de contention.
+ */
+public final class FeedMetrics {
+	private static final LongAdder[] counters = new LongAdder[FeedPath.values().length];
+	private static final LongAdder cacheHits = new LongAdder();
+
+	static {
+		for (int i = 0; i < counters.length; i++) {
+			counters[i] = new LongAdder();
+		}
+	}
+
+	private FeedMetrics() {
+	}
+
+	/**
+	 * Enregistre le renvoi d'une page construite selon le FeedPath spécifié. Les
+	 * pages renvoyées depuis le cache sont comptées par recordCacheHit().
+	 *
+	 * @param path la manière dont la page renvoyée a été construite
+	 *
+	 * @requires path != null;
+	 * @ensures getCount(path) == \old(getCount(path)) + 1;
+	 */
+	static void record(FeedPath path) {
+		counters[path.ordinal()].increment();
+	}
+
+	/**
+	 * Enregistre le renvoi d'une page depuis le cache des NewsFeed.
+	 *
+	 * @ensures getCacheHitCount() == \old(getCacheHitCount()) + 1;
+	 */
+	static void recordCacheHit() {
+		cacheHits.increment();
+	}
+
+	/**
+	 * Renvoie le nombre de pages renvoyées depuis le cache des NewsFeed, sans
+	 * être reconstruites, depuis le démarrage ou le dernier appel à reset().
+	 *
+	 * @return le nombre de pages renvoyées depuis le cache
+	 *
+	 * @ensures \result >= 0;
+	 *
+	 * @pure
+	 */
+	public static long getCacheHitCount() {
+		return cacheHits.sum();
+	}
+
+	/**
+	 * Renvoie le nombre de pages construites selon le FeedPath spécifié et
+	 * renvoyées par User.newsFeed(int, FeedCursor) depuis le démarrage ou le
+	 * dernier appel à reset().
+	 *
+	 * @param path la manière dont les pages comptées ont été construites
+	 *
+	 * @return le nombre de pages construites selon le FeedPath spécifié
+	 *
+	 * @throws NullPointerException si path est null
+	 *
+	 * @ensures \result >= 0;
+	 *
+	 * @pure
+	 */
+	public static long getCount(FeedPath path) {
+		return counters[path.ordinal()].sum();
+	}
+
+	/**
+	 * Remet tous les compteurs à zéro.
+	 *
+	 * @ensures (\forall FeedPath path; getCount(path) == 0);
+	 * @ensures getCacheHitCount() == 0;
+	 */
+	public static void reset() {
+		for (LongAdder counter : counters) {
+			counter.reset();
+		}
+		cacheHits.reset();
+	}
+}
@@ -0,0 +1,79 @@
+package social.model;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Une page d'un NewsFeed: une liste de Post triée du plus récent au plus
+ * ancien, accompagnée du FeedCursor permettant d'obtenir la page suivante.
+ *
+ * @invariant getPosts() != null && !getPosts().contains(null);
+ * @invariant hasMore() <==> getNextCursor() != null;
+ */
+public final class FeedPage {
+	private final List<Post> posts;
+	private final FeedCursor nextCursor;
+	private final FeedPath path;
+
+	/**
+	 * Initialise une page contenant les Post spécifiés.
+	 *
+	 * @param posts      les Post de cette page
+	 * @param nextCursor la position de la page suivante, ou null s'il n'y en a pas
+	 * @param path       la manière dont cette page a été construite
+	 *
+	 * @requires posts != null;
+	 * @requires path != null;
+	 */
+	FeedPage(List<Post> posts, FeedCursor nextCursor, FeedPath path) {
+		this.posts = Collections.unmodifiableList(posts);
+		this.nextCursor = nextCursor;
+		this.path = path;
+	}
+
+	/**
+	 * Renvoie une vue non modifiable des Post de cette page, du plus récent au plus
+	 * ancien.
+	 *
+	 * @return les Post de cette page
+	 *
+	 * @pure
+	 */
+	public List<Post> getPosts() {
+		return posts;
+	}
+
+	/**
+	 * Renvoie la position de la page suivante, à passer à User.newsFeed(int,
+	 * FeedCursor), ou null si cette page est la dernière.
+	 *
+	 * @return la position de la page suivante ou null
+	 *
+	 * @pure
+	 */
+	public FeedCursor getNextCursor() {
+		return nextCursor;
+	}
+
+	/**
+	 * Renvoie true s'il existe une page suivante.
+	 *
+	 * @return true s'il existe une page suivante; false sinon
+	 *
+	 * @pure
+	 */
+	public boolean hasMore() {
+		return nextCursor != null;
+	}
+
+	/**
+	 * Renvoie la manière dont cette page a été construite.
+	 *
+	 * @return la manière dont cette page a été construite
+	 *
+	 * @pure
+	 */
+	public FeedPath getPath() {
+		return path;
+	}
+}
@@ -0,0 +1,20 @@
+package social.model;
+
+/**
+ * La manière dont une page de NewsFeed a été construite.
+ */
+public enum FeedPath {
+	/**
+	 * Fusion, au moment de la lecture, des Post de tous les User concernés.
+	 */
+	PULL,
+	/**
+	 * Simple parcours du NewsFeed matérialisé (Inbox) du lecteur.
+	 */
+	PUSH,
+	/**
+	 * Fusion, au moment de la lecture, du NewsFeed matérialisé du lecteur et des
+	 * Post des User ayant plus de User.getCelebrityThreshold() followers.
+	 */
+	HYBRID
+}
@@ -0,0 +1,231 @@
+package social.model;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Un service de lecture des NewsFeed: chaque demande de page est exécutée de
+ * manière asynchrone par un ExecutorService, et le nombre de demandes en cours
+ * est limité par un nombre maximal de demandes admises simultanément.
+ *
+ * Une demande reçue alors que getMaxConcurrentRequests() demandes sont déjà en
+ * cours est immédiatement refusée: le CompletableFuture renvoyé échoue avec une
+ * RejectedExecutionException, sans que la demande n'occupe de thread ni de
+ * place dans une file d'attente.
+ *
+ * withVirtualThreads(int) exécute chaque demande sur un thread virtuel, de
+ * sorte que des dizaines de milliers de demandes peuvent être en cours sans
+ * autant de threads système; withThreadPerRequest(int) exécute chaque demande
+ * en cours sur son propre thread système, et withPlatformThreads(int, int)
+ * utilise un nombre fixe de threads système. BenchFeedService compare leurs
+ * débits et leurs latences.
+ *
+ * @invariant getMaxConcurrentRequests() > 0;
+ * @invariant getInFlightCount() >= 0 && getInFlightCount() <=
+ *            getMaxConcurrentRequests();
+ */
+public final class FeedService implements AutoCloseable {
+	private final ExecutorService executor;
+	private final int maxConcurrentRequests;
+	private final Semaphore admission;
+	private final LongAdder served, rejected;
+
+	/**
+	 * Initialise un FeedService exécutant les demandes avec l'ExecutorService
+	 * spécifié et admettant au plus maxConcurrentRequests demandes simultanées.
+	 *
+	 * @param executor              l'ExecutorService exécutant les demandes
+	 * @param maxConcurrentRequests nombre maximal de demandes en cours
+	 *
+	 * @throws NullPointerException     si executor est null
+	 * @throws IllegalArgumentException si maxConcurrentRequests <= 0
+	 *
+	 * @requires executor != null;
+	 * @requires maxConcurrentRequests > 0;
+	 * @ensures getMaxConcurrentRequests() == maxConcurrentRequests;
+	 * @ensures getInFlightCount() == 0;
+	 */
+	public FeedService(ExecutorService executor, int maxConcurrentRequests) {
+		if (executor == null) {
+			throw new NullPointerException();
+		}
+		if (maxConcurrentRequests <= 0) {
+			throw new IllegalArgumentException();
+		}
+		this.executor = executor;
+		this.maxConcurrentRequests = maxConcurrentRequests;
+		this.admission = new Semaphore(maxConcurrentRequests);
+		this.served = new LongAdder();
+		this.rejected = new LongAdder();
+	}
+
+	/**
+	 * Renvoie un FeedService exécutant chaque demande sur un nouveau thread
+	 * virtuel.
+	 *
+	 * @param maxConcurrentRequests nombre maximal de demandes en cours
+	 *
+	 * @return un FeedService utilisant un thread virtuel par demande
+	 *
+	 * @throws IllegalArgumentException si maxConcurrentRequests <= 0
+	 *
+	 * @requires maxConcurrentRequests > 0;
+	 */
+	public static FeedService withVirtualThreads(int maxConcurrentRequests) {
+		if (maxConcurrentRequests <= 0) {
+			throw new IllegalArgumentException();
+		}
+		return new FeedService(Executors.newVirtualThreadPerTaskExecutor(), maxConcurrentRequests);
+	}
+
+	/**
+	 * Renvoie un FeedService exécutant chaque demande en cours sur son propre
+	 * thread système, les threads inactifs étant réutilisés: le nombre de threads
+	 * n'est borné que par maxConcurrentRequests et aucune demande admise n'attend
+	 * un thread libre.
+	 *
+	 * @param maxConcurrentRequests nombre maximal de demandes en cours
+	 *
+	 * @return un FeedService utilisant un thread système par demande en cours
+	 *
+	 * @throws IllegalArgumentException si maxConcurrentRequests <= 0
+	 *
+	 * @requires maxConcurrentRequests > 0;
+	 */
+	public static FeedService withThreadPerRequest(int maxConcurrentRequests) {
+		if (maxConcurrentRequests <= 0) {
+			throw new IllegalArgumentException();
+		}
+		return new FeedService(Executors.newCachedThreadPool(), maxConcurrentRequests);
+	}
+
+	/**
+	 * Renvoie un FeedService exécutant les demandes sur threadNb threads système.
+	 *
+	 * @param threadNb              nombre de threads exécutant les demandes
+	 * @param maxConcurrentRequests nombre maximal de demandes en cours
+	 *
+	 * @return un FeedService utilisant un nombre fixe de threads système
+	 *
+	 * @throws IllegalArgumentException si threadNb <= 0 ou maxConcurrentRequests
+	 *                                  <= 0
+	 *
+	 * @requires threadNb > 0;
+	 * @requires maxConcurrentRequests > 0;
+	 */
+	public static FeedService withPlatformThreads(int threadNb, int maxConcurrentRequests) {
+		if (threadNb <= 0 || maxConcurrentRequests <= 0) {
+			throw new IllegalArgumentException();
+		}
+		return new FeedService(Executors.newFixedThreadPool(threadNb), maxConcurrentRequests);
+	}
+
+	/**
+	 * Renvoie le nombre maximal de demandes en cours.
+	 *
+	 * @return le nombre maximal de demandes en cours
+	 *
+	 * @pure
+	 */
+	public int getMaxConcurrentRequests() {
+		return maxConcurrentRequests;
+	}
+
+	/**
+	 * Renvoie le nombre de demandes admises et non encore terminées.
+	 *
+	 * @return le nombre de demandes en cours
+	 *
+	 * @pure
+	 */
+	public int getInFlightCount() {
+		return maxConcurrentRequests - admission.availablePermits();
+	}
+
+	/**
+	 * Renvoie le nombre de demandes admises et terminées.
+	 *
+	 * @return le nombre de demandes servies
+	 *
+	 * @pure
+	 */
+	public long getServedCount() {
+		return served.sum();
+	}
+
+	/**
+	 * Renvoie le nombre de demandes refusées.
+	 *
+	 * @return le nombre de demandes refusées
+	 *
+	 * @pure
+	 */
+	public long getRejectedCount() {
+		return rejected.sum();
+	}
+
+	/**
+	 * Demande de manière asynchrone une page du NewsFeed de l'User spécifié (voir
+	 * User.newsFeed(int, FeedCursor)). Si getMaxConcurrentRequests() demandes
+	 * sont déjà en cours, ou si ce FeedService a été fermé, la demande est
+	 * refusée et le résultat échoue avec une RejectedExecutionException.
+	 *
+	 * @param reader l'User dont le NewsFeed est lu
+	 * @param limit  nombre maximal de Post de la page
+	 * @param after  position de début de la page, ou null pour la première page
+	 *
+	 * @return la page demandée, disponible à la fin de son exécution
+	 *
+	 * @throws NullPointerException     si reader est null
+	 * @throws IllegalArgumentException si limit <= 0
+	 *
+	 * @requires reader != null;
+	 * @requires limit > 0;
+	 * @ensures \result != null;
+	 */
+	public CompletableFuture<FeedPage> newsFeed(User reader, int limit, FeedCursor after) {
+		if (reader == null) {
+			throw new NullPointerException();
+		}
+		if (limit <= 0) {
+			throw new IllegalArgumentException();
+		}
+		if (!admission.tryAcquire()) {
+			rejected.increment();
+			return CompletableFuture.failedFuture(new RejectedExecutionException());
+		}
+		try {
+			return CompletableFuture.supplyAsync(() -> {
+				try {
+					return reader.newsFeed(limit, after);
+				} finally {
+					served.increment();
+					admission.release();
+				}
+			}, executor);
+		} catch (RejectedExecutionException e) {
+			admission.release();
+			rejected.increment();
+			return CompletableFuture.failedFuture(e);
+		}
+	}
+
+	/**
+	 * Refuse les demandes ultérieures, attend la fin des demandes en cours (au
+	 * plus une minute) et libère les threads de ce FeedService.
+	 */
+	@Override
+	public void close() {
+		executor.shutdown();
+		try {
+			executor.awaitTermination(1, TimeUnit.MINUTES);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+}
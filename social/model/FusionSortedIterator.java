@@ -10,6 +10,10 @@ import java.util.List;
 import java.util.ListIterator;
 import java.util.NoSuchElementException;
 import java.util.Set;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
  * Un ListIterator fusionnant plusieurs ExtendedListIterator en interdisant
@@ -20,6 +24,20 @@ import java.util.Set;
  *
  * Par défaut, l'ordre considéré est l'ordre naturel entre les éléments,
  * cependant un ordre alternatif peut-être spécifié à la création de l'instance.
+ *
+ * La fusion est réalisée à l'aide de deux tas indexés: le premier contient les
+ * ListIterator fusionnés ayant encore un élément suivant, ordonnés selon cet
+ * élément (obtenu par getNext(), sans avancer l'itérateur), le second contient
+ * ceux ayant un élément précédent, ordonnés selon cet élément (obtenu par
+ * getPrevious()) dans l'ordre inverse. Chaque appel à next() ou à previous()
+ * coûte donc O(log k), k étant le nombre de ListIterator fusionnés, quel que
+ * soit le sens de parcours. En cas d'égalité entre deux éléments, l'élément du
+ * ListIterator rencontré en premier dans l'ensemble fusionné est considéré
+ * comme le plus petit.
+ *
+ * Au-delà de TOURNAMENT_THRESHOLD ListIterator fusionnés, les deux tas sont
+ * remplacés par des arbres de tournoi, qui replacent une source en
+ * log2(k) comparaisons sans aucun échange.
  * 
  * @param <E> le type des éléments énumérés par cet itérateur
  * @param <I> le type des itérateurs fusionnés
@@ -45,10 +63,16 @@ import java.util.Set;
 public class FusionSortedIterator<E extends Comparable<? super E>, I extends ExtendedListIterator<? extends E>>
 		implements ListIterator<E> {
 
-	private Set<? extends I> iterSet;
+	/**
+	 * Nombre de ListIterator fusionnés à partir duquel la fusion utilise des
+	 * arbres de tournoi plutôt que des tas binaires.
+	 */
+	public static final int TOURNAMENT_THRESHOLD = 16;
+
 	private Comparator<? super E> comparator;
-	private int previousIndex, nextIndex, lastIndex;
-	private ListIterator<? extends I> iterator;
+	private int nextIndex, lastIndex;
+	private List<I> sources;
+	private SourceQueue nextHeads, previousHeads;
 	private I currentIterator;
 
 	/**
@@ -83,8 +107,8 @@ public class FusionSortedIterator<E extends Comparable<? super E>, I extends Ext
 		if (iters.contains(null)) {
 			throw new NullPointerException();
 		}
-		this.iterSet = iters;
 		this.comparator = Comparator.naturalOrder();
+		this.initSources(iters, TOURNAMENT_THRESHOLD);
 		this.startIteration();
 	}
 
@@ -112,6 +136,35 @@ public class FusionSortedIterator<E extends Comparable<? super E>, I extends Ext
 	 *                              null, ou si le Comparator spécifié est null
 	 */
 	public FusionSortedIterator(Set<? extends I> iters, Comparator<? super E> comparator) {
+		this(iters, comparator, TOURNAMENT_THRESHOLD);
+	}
+
+	/**
+	 * Initialise une instance permettant d'itérer sur tous les éléments des
+	 * ListIterator de l'ensemble spécifié selon l'ordre spécifié, en choisissant
+	 * explicitement le seuil au-delà duquel la fusion utilise des arbres de
+	 * tournoi plutôt que des tas binaires. L'ordre des éléments énumérés ne
+	 * dépend pas de ce seuil.
+	 *
+	 * @param iters               ensemble des ListIterator à fusionner
+	 * @param comparator          le comparateur à utiliser
+	 * @param tournamentThreshold nombre de ListIterator fusionnés à partir duquel
+	 *                            les arbres de tournoi sont utilisés
+	 *
+	 * @requires iters != null && !iters.contains(null);
+	 * @requires comparator != null;
+	 * @ensures comparator() != null;
+	 * @ensures !hasPrevious();
+	 * @ensures lastIndex() == -1;
+	 * @ensures lastIterator() == null;
+	 * @ensures (\forall I iter; iters.contains(iter); !iter.hasPrevious() &&
+	 *          iter.lastIndex() == -1);
+	 *
+	 * @throws NullPointerException si l'ensemble spécifié est null ou contient
+	 *                              null, ou si le Comparator spécifié est null
+	 */
+	public FusionSortedIterator(Set<? extends I> iters, Comparator<? super E> comparator,
+			int tournamentThreshold) {
 		if (iters == null) {
 			throw new NullPointerException();
 		}
@@ -121,11 +174,27 @@ public class FusionSortedIterator<E extends Comparable<? super E>, I extends Ext
 		if (comparator == null) {
 			throw new NullPointerException();
 		}
-		this.iterSet = iters;
 		this.comparator = comparator;
+		this.initSources(iters, tournamentThreshold);
 		this.startIteration();
 	}
 
+	/**
+	 * Mémorise les ListIterator à fusionner et crée les files de priorité
+	 * adaptées à leur nombre.
+	 */
+	private void initSources(Set<? extends I> iters, int tournamentThreshold) {
+		this.sources = new ArrayList<I>(iters);
+		int k = sources.size();
+		if (k >= tournamentThreshold) {
+			this.nextHeads = new SourceTournament(k, this::compareNext);
+			this.previousHeads = new SourceTournament(k, this::comparePrevious);
+		} else {
+			this.nextHeads = new SourceHeap(k, this::compareNext);
+			this.previousHeads = new SourceHeap(k, this::comparePrevious);
+		}
+	}
+
 	/**
 	 * (Re)Initialise ce ListIterateur pour le démarrage d'une nouvelle itération
 	 * sur ses éléments.
@@ -135,14 +204,78 @@ public class FusionSortedIterator<E extends Comparable<? super E>, I extends Ext
 	 * @ensures nextIndex() == 0;
 	 * @ensures lastIndex() == -1;
 	 * @ensures lastIterator() == null;
+	 * @ensures (\forall I iter; iters.contains(iter); !iter.hasPrevious() &&
+	 *          iter.lastIndex() == -1);
 	 */
 	public void startIteration() {
-		this.previousIndex = -1;
 		this.nextIndex = 0;
 		this.lastIndex = -1;
-		List<? extends I> list = new ArrayList<>(iterSet);
-		this.iterator = list.listIterator();
 		this.currentIterator = null;
+		this.nextHeads.clear();
+		this.previousHeads.clear();
+		for (int i = 0; i < sources.size(); i++) {
+			I iter = sources.get(i);
+			iter.startIteration();
+			nextHeads.update(i, iter.hasNext());
+		}
+	}
+
+	/**
+	 * Compare les éléments suivants des ListIterator fusionnés d'index
+	 * spécifiés, l'index départageant les éléments égaux.
+	 */
+	private int compareNext(int i, int j) {
+		int cmp = comparator.compare(sources.get(i).getNext(), sources.get(j).getNext());
+		return cmp != 0 ? cmp : Integer.compare(i, j);
+	}
+
+	/**
+	 * Compare les éléments précédents des ListIterator fusionnés d'index
+	 * spécifiés selon l'ordre inverse, de sorte que le plus grand élément
+	 * précédent soit en tête de previousHeads.
+	 */
+	private int comparePrevious(int i, int j) {
+		int cmp = comparator.compare(sources.get(j).getPrevious(), sources.get(i).getPrevious());
+		return cmp != 0 ? cmp : Integer.compare(j, i);
+	}
+
+	/**
+	 * Replace le ListIterator fusionné d'index spécifié dans les deux tas après
+	 * un déplacement de ce ListIterator.
+	 */
+	private void moved(int i) {
+		I iter = sources.get(i);
+		nextHeads.update(i, iter.hasNext());
+		previousHeads.update(i, iter.hasPrevious());
+	}
+
+	/**
+	 * Renvoie un Stream séquentiel des éléments restant à énumérer par next(),
+	 * ordonnés selon comparator().
+	 * 
+	 * Si tous les ListIterator fusionnés sont des User ou des TimelineCursor, le
+	 * Stream est obtenu sans copie ni modification de l'état de cet itérateur:
+	 * son Spliterator est ORDERED, SORTED, NONNULL, SIZED, SUBSIZED et IMMUTABLE
+	 * et se découpe en plages d'éléments (de dates pour des Post), de sorte que
+	 * le Stream peut être parallélisé efficacement (voir Stream.parallel()).
+	 * Sinon le Stream, ORDERED et NONNULL, énumère les éléments en parcourant
+	 * cet itérateur, qui ne doit plus être utilisé par ailleurs.
+	 * 
+	 * @return un Stream des éléments restant à énumérer par next()
+	 * 
+	 * @ensures \result != null;
+	 */
+	public Stream<E> stream() {
+		List<List<? extends E>> lists = new ArrayList<List<? extends E>>(sources.size());
+		for (I iter : sources) {
+			List<? extends E> remaining = SortedMergeSpliterator.remainingOf(iter);
+			if (remaining == null) {
+				return StreamSupport.stream(
+						Spliterators.spliteratorUnknownSize(this, Spliterator.ORDERED | Spliterator.NONNULL), false);
+			}
+			lists.add(remaining);
+		}
+		return StreamSupport.stream(new SortedMergeSpliterator<E>(lists, comparator), false);
 	}
 
 	/**
@@ -196,7 +329,7 @@ public class FusionSortedIterator<E extends Comparable<? super E>, I extends Ext
 	 */
 	@Override
 	public boolean hasNext() {
-		return currentIterator.hasNext() || iterator.hasNext();
+		return !nextHeads.isEmpty();
 	}
 
 	/**
@@ -225,15 +358,14 @@ public class FusionSortedIterator<E extends Comparable<? super E>, I extends Ext
 		if (!hasNext()) {
 			throw new NoSuchElementException();
 		}
-		if (currentIterator.hasNext()) {
-			E next = currentIterator.next();
-			lastIndex = nextIndex;
-			nextIndex++;
-			return next;
-		} else {
-			currentIterator = iterator.next();
-			return next();
-		}
+		int i = nextHeads.peek();
+		I iter = sources.get(i);
+		E next = iter.next();
+		moved(i);
+		currentIterator = iter;
+		lastIndex = nextIndex;
+		nextIndex++;
+		return next;
 	}
 
 	/**
@@ -247,7 +379,7 @@ public class FusionSortedIterator<E extends Comparable<? super E>, I extends Ext
 	 */
 	@Override
 	public boolean hasPrevious() {
-		return currentIterator.hasPrevious() || iterator.hasPrevious();
+		return !previousHeads.isEmpty();
 	}
 
 	/**
@@ -275,15 +407,14 @@ public class FusionSortedIterator<E extends Comparable<? super E>, I extends Ext
 		if (!hasPrevious()) {
 			throw new NoSuchElementException();
 		}
-		if (currentIterator.hasPrevious()) {
-			E previous = currentIterator.previous();
-			lastIndex = previousIndex;
-			previousIndex--;
-			return previous;
-		} else {
-			currentIterator = iterator.previous();
-			return previous();
-		}
+		int i = previousHeads.peek();
+		I iter = sources.get(i);
+		E previous = iter.previous();
+		moved(i);
+		currentIterator = iter;
+		nextIndex--;
+		lastIndex = nextIndex;
+		return previous;
 	}
 
 	/**
@@ -299,12 +430,7 @@ public class FusionSortedIterator<E extends Comparable<? super E>, I extends Ext
 	 */
 	@Override
 	public int nextIndex() {
-		if (hasNext()) {
-			return nextIndex;
-		} else {
-			return iterSet.size();
-
-		}
+		return nextIndex;
 	}
 
 	/**
@@ -320,11 +446,7 @@ public class FusionSortedIterator<E extends Comparable<? super E>, I extends Ext
 	 */
 	@Override
 	public int previousIndex() {
-		if (hasPrevious()) {
-			return previousIndex;
-		} else {
-			return -1;
-		}
+		return nextIndex - 1;
 	}
 
 	/**
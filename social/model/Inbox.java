@@ -0,0 +1,343 @@
+package social.model;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Le NewsFeed matérialisé d'un User en mode "push": les capacity Post les plus
+ * récents des User auxquels il est abonné (et de lui-même), accompagnés de leur
+ * auteur, triés selon l'ordre du NewsFeed (voir PullFeed.compare): par date
+ * puis, à date égale, par identifiant de leur auteur.
+ *
+ * Chaque publication d'un Post est recopiée (par référence) dans l'Inbox des
+ * followers de son auteur, de sorte que la lecture d'une page du NewsFeed se
+ * réduit au parcours de l'Inbox. Les entrées sont mémorisées dans un tampon
+ * circulaire, de la plus ancienne à la plus récente: l'ajout d'un Post plus
+ * récent que tous les autres se fait en temps constant, la plus ancienne
+ * entrée étant éliminée lorsque l'Inbox est pleine.
+ *
+ * Une Inbox contient toujours tous les Post de ses auteurs postérieurs à sa
+ * plus ancienne entrée. Lorsqu'un auteur est retiré d'une Inbox ayant déjà
+ * éliminé des entrées, elle est donc complétée par les Post des auteurs
+ * restants antérieurs à sa plus ancienne entrée.
+ *
+ * Les méthodes de cette classe sont synchronisées, plusieurs auteurs pouvant
+ * publier simultanément vers un même follower.
+ *
+ * @invariant size() >= 0 && size() <= getCapacity();
+ */
+final class Inbox {
+	private final Post[] posts;
+	private final User[] authors;
+	private int head, size;
+	private boolean truncated;
+
+	/**
+	 * Initialise une Inbox vide pouvant contenir au plus capacity Post.
+	 *
+	 * @param capacity nombre maximal de Post mémorisés
+	 *
+	 * @requires capacity > 0;
+	 * @ensures size() == 0;
+	 * @ensures getCapacity() == capacity;
+	 */
+	Inbox(int capacity) {
+		this.posts = new Post[capacity];
+		this.authors = new User[capacity];
+		this.head = 0;
+		this.size = 0;
+		this.truncated = false;
+	}
+
+	/**
+	 * Renvoie le nombre maximal de Post mémorisés par cette Inbox.
+	 *
+	 * @return le nombre maximal de Post mémorisés par cette Inbox
+	 *
+	 * @pure
+	 */
+	int getCapacity() {
+		return posts.length;
+	}
+
+	/**
+	 * Renvoie le nombre de Post mémorisés par cette Inbox.
+	 *
+	 * @return le nombre de Post mémorisés par cette Inbox
+	 *
+	 * @pure
+	 */
+	synchronized int size() {
+		return size;
+	}
+
+	/**
+	 * Ajoute le Post spécifié à sa place dans cette Inbox. Si l'Inbox est pleine,
+	 * le plus ancien Post (éventuellement celui spécifié) est éliminé. Un Post
+	 * déjà présent, recopié par backfill(User) entre sa publication et sa
+	 * diffusion, n'est pas ajouté une seconde fois.
+	 *
+	 * @param p      le Post publié
+	 * @param author l'auteur du Post publié
+	 *
+	 * @requires p != null && author != null;
+	 */
+	synchronized void add(Post p, User author) {
+		// Position d'insertion, en partant de l'entrée la plus récente
+		int pos = size;
+		while (pos > 0 && PullFeed.compare(postAt(pos - 1), authorAt(pos - 1), p, author) < 0) {
+			pos--;
+		}
+		if (pos > 0 && PullFeed.compare(postAt(pos - 1), authorAt(pos - 1), p, author) == 0) {
+			return;
+		}
+		if (size == posts.length) {
+			truncated = true;
+			if (pos == 0) {
+				return;
+			}
+			head = slot(1);
+			size--;
+			pos--;
+		}
+		for (int i = size; i > pos; i--) {
+			set(i, postAt(i - 1), authorAt(i - 1));
+		}
+		set(pos, p, author);
+		size++;
+	}
+
+	/**
+	 * Ajoute à cette Inbox les Post les plus récents de l'User spécifié, en ne
+	 * conservant que les getCapacity() Post les plus récents de l'ensemble. Les
+	 * Post de cet User ne doivent pas déjà figurer dans cette Inbox.
+	 *
+	 * @param author l'User dont les Post sont ajoutés
+	 *
+	 * @requires author != null;
+	 */
+	synchronized void backfill(User author) {
+		backfill(author, null, null);
+	}
+
+	/**
+	 * Ajoute à cette Inbox les Post les plus récents de l'User spécifié qui
+	 * suivent le Post before, publié par beforeAuthor, dans l'ordre du NewsFeed
+	 * (ou tous ses Post si before est null), en ne conservant que les
+	 * getCapacity() Post les plus récents de l'ensemble.
+	 */
+	private void backfill(User author, Post before, User beforeAuthor) {
+		// Instantané: l'auteur publie sans prendre le verrou de cette Inbox, et un
+		// Post publié pendant la fusion décalerait les index de la Timeline
+		List<Post> timeline = author.timeline().snapshot();
+		int capacity = posts.length;
+		int first = before == null ? 0 : PullFeed.indexAfter(timeline, author, before, beforeAuthor);
+		int n = Math.min(capacity, timeline.size() - first);
+		int total = Math.min(capacity, size + n);
+		if (size + timeline.size() - first > capacity) {
+			truncated = true;
+		}
+		Post[] mergedPosts = new Post[capacity];
+		User[] mergedAuthors = new User[capacity];
+		// Fusion en partant des plus récents: i parcourt cette Inbox, j la Timeline
+		int i = size - 1;
+		int j = first;
+		for (int k = total - 1; k >= 0; k--) {
+			if (j < first + n && (i < 0 || PullFeed.compare(timeline.get(j), author, postAt(i), authorAt(i)) < 0)) {
+				mergedPosts[k] = timeline.get(j);
+				mergedAuthors[k] = author;
+				j++;
+			} else {
+				mergedPosts[k] = postAt(i);
+				mergedAuthors[k] = authorAt(i);
+				i--;
+			}
+		}
+		System.arraycopy(mergedPosts, 0, posts, 0, capacity);
+		System.arraycopy(mergedAuthors, 0, authors, 0, capacity);
+		head = 0;
+		size = total;
+	}
+
+	/**
+	 * Retire de cette Inbox tous les Post de l'User spécifié. Si cette Inbox a
+	 * déjà éliminé des entrées, elle est complétée par les Post des auteurs
+	 * spécifiés antérieurs à sa plus ancienne entrée.
+	 *
+	 * @param author  l'User dont les Post sont retirés
+	 * @param authors les auteurs restants de cette Inbox
+	 *
+	 * @requires authors != null && !authors.contains(author);
+	 */
+	synchronized void removeAuthor(User author, Collection<User> authors) {
+		if (removeEntries(author) > 0 && truncated) {
+			Post oldest = size > 0 ? postAt(0) : null;
+			User oldestAuthor = size > 0 ? authorAt(0) : null;
+			truncated = false;
+			for (User u : authors) {
+				backfill(u, oldest, oldestAuthor);
+			}
+		}
+	}
+
+	/**
+	 * Remplace les Post de l'User spécifié mémorisés par cette Inbox par ses Post
+	 * les plus récents. Utilisé lorsque les Post de cet User, auparavant fusionnés
+	 * au moment de la lecture, doivent de nouveau être recopiés dans cette Inbox.
+	 *
+	 * @param author l'User dont les Post sont remplacés
+	 *
+	 * @requires author != null;
+	 */
+	synchronized void refreshAuthor(User author) {
+		removeEntries(author);
+		backfill(author, null, null);
+	}
+
+	/**
+	 * Retire de cette Inbox les Post de l'User spécifié et renvoie leur nombre.
+	 */
+	private int removeEntries(User author) {
+		int kept = 0;
+		for (int i = 0; i < size; i++) {
+			if (authorAt(i) != author) {
+				set(kept, postAt(i), authorAt(i));
+				kept++;
+			}
+		}
+		for (int i = kept; i < size; i++) {
+			set(i, null, null);
+		}
+		int removed = size - kept;
+		size = kept;
+		return removed;
+	}
+
+	/**
+	 * Renvoie une page de cette Inbox: au plus limit Post, du plus récent au plus
+	 * ancien, qui suivent dans l'ordre du NewsFeed le dernier Post énuméré par la
+	 * position spécifiée.
+	 *
+	 * @param limit nombre maximal de Post de la page
+	 * @param after position de début de la page, ou null pour la première page
+	 *
+	 * @return la page demandée
+	 *
+	 * @requires limit > 0;
+	 * @ensures \result != null;
+	 * @ensures \result.getPosts().size() <= limit;
+	 *
+	 * @pure
+	 */
+	synchronized FeedPage page(int limit, FeedCursor after) {
+		int start = size;
+		if (after != null) {
+			start = countAfter(after.getLastPost(), after.getLastAuthor());
+		}
+		List<Post> page = new ArrayList<Post>(Math.min(limit, start));
+		int i = start - 1;
+		while (i >= 0 && page.size() < limit) {
+			page.add(postAt(i));
+			i--;
+		}
+		if (i < 0) {
+			return new FeedPage(page, null, FeedPath.PUSH);
+		}
+		return new FeedPage(page,
+				new FeedCursor(Collections.<User, Integer>emptyMap(), page.get(page.size() - 1), authorAt(i + 1)),
+				FeedPath.PUSH);
+	}
+
+	/**
+	 * Renvoie une page du NewsFeed fusionnant les entrées de cette Inbox dont
+	 * l'auteur n'appartient pas à pulled et les Post des User de pulled. Si cette
+	 * Inbox a déjà éliminé des entrées, les Post des User de pulled antérieurs à
+	 * sa plus ancienne entrée sont ignorés, les Post des autres auteurs n'y
+	 * figurant plus. Les entrées sont fusionnées directement depuis le tampon
+	 * circulaire, sans être recopiées: seules celles parcourues par la page sont
+	 * examinées.
+	 *
+	 * @param limit  nombre maximal de Post de la page
+	 * @param after  position de début de la page, ou null pour la première page
+	 * @param pulled les User dont les Post sont fusionnés au moment de la lecture
+	 *
+	 * @return la page demandée
+	 *
+	 * @requires limit > 0;
+	 * @requires pulled != null && !pulled.contains(null);
+	 * @ensures \result != null;
+	 * @ensures \result.getPosts().size() <= limit;
+	 *
+	 * @pure
+	 */
+	synchronized FeedPage page(int limit, FeedCursor after, Set<User> pulled) {
+		// Vues des entrées, de la plus récente à la plus ancienne, valides tant que
+		// le verrou de cette Inbox est détenu
+		List<Post> pushed = new AbstractList<Post>() {
+			@Override
+			public Post get(int i) {
+				return postAt(size - 1 - i);
+			}
+
+			@Override
+			public int size() {
+				return size;
+			}
+		};
+		List<User> pushedAuthors = new AbstractList<User>() {
+			@Override
+			public User get(int i) {
+				return authorAt(size - 1 - i);
+			}
+
+			@Override
+			public int size() {
+				return size;
+			}
+		};
+		boolean bounded = truncated && size > 0;
+		return PullFeed.page(pushed, pushedAuthors, pulled, bounded ? postAt(0) : null, bounded ? authorAt(0) : null,
+				limit, after);
+	}
+
+	/**
+	 * Renvoie le nombre d'entrées de cette Inbox qui suivent le Post spécifié,
+	 * publié par author, dans l'ordre du NewsFeed, obtenu par recherche
+	 * dichotomique.
+	 */
+	private int countAfter(Post p, User author) {
+		int low = 0;
+		int high = size;
+		while (low < high) {
+			int mid = (low + high) >>> 1;
+			if (PullFeed.compare(postAt(mid), authorAt(mid), p, author) > 0) {
+				low = mid + 1;
+			} else {
+				high = mid;
+			}
+		}
+		return low;
+	}
+
+	private int slot(int i) {
+		return (head + i) % posts.length;
+	}
+
+	private Post postAt(int i) {
+		return posts[slot(i)];
+	}
+
+	private User authorAt(int i) {
+		return authors[slot(i)];
+	}
+
+	private void set(int i, Post p, User author) {
+		int slot = slot(i);
+		posts[slot] = p;
+		authors[slot] = author;
+	}
+}
@@ -0,0 +1,302 @@
+package social.model;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NavigableSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+
+/**
+ * Un classement des getCapacity() Post les plus "likés" parmi les Post qui lui
+ * sont signalés, tenu à jour à chaque like.
+ *
+ * Un SimplePost signale chacun de ses likes nouveaux au classement global
+ * (voir enableGlobal(int)) et au classement de son auteur (voir
+ * User.enableLeaderboard(int)) lorsqu'ils existent. Les Post classés sont
+ * mémorisés dans un ConcurrentSkipListSet trié par nombre de likes
+ * décroissant, indexé par une table concurrente associant à chaque Post classé
+ * son entrée courante: la mise à jour d'un Post coûte O(log K) pour un
+ * classement de K Post et les k premiers Post s'obtiennent en O(k).
+ *
+ * Les mises à jour peuvent être effectuées simultanément depuis plusieurs
+ * threads. Celle d'un Post déjà classé, c'est-à-dire de l'un des Post les plus
+ * likés, ne prend aucun verrou: sa nouvelle entrée est insérée dans l'ordre
+ * puis substituée à l'ancienne dans la table par compareAndSet, l'ancienne
+ * entrée étant ensuite retirée de l'ordre. Seule l'entrée d'un Post dans le
+ * classement, qui peut en évincer le dernier Post, est sérialisée par le
+ * verrou du classement; un Post ayant moins de likes que le dernier Post
+ * classé est écarté sans verrou, au moyen d'une copie volatile de ce minimum.
+ *
+ * @invariant getCapacity() > 0;
+ * @invariant size() >= 0 && size() <= getCapacity();
+ * @invariant top().size() == size();
+ */
+public final class Leaderboard {
+	private static volatile Leaderboard global;
+
+	private final int capacity;
+	// Entrées courantes et, brièvement, entrées en cours de remplacement
+	private final NavigableSet<Entry> ranking;
+	// Entrée courante de chaque Post classé
+	private final ConcurrentMap<Post, Entry> entries;
+	// Minorant du nombre de likes des Post classés lorsque le classement est
+	// plein, -1 sinon
+	private volatile int minLikes;
+	// Numéro d'entrée du prochain Post classé, sous le verrou du classement
+	private long nextSeq;
+
+	/**
+	 * Initialise un classement vide des capacity Post les plus likés.
+	 *
+	 * @param capacity nombre de Post du classement
+	 *
+	 * @throws IllegalArgumentException si capacity <= 0
+	 *
+	 * @requires capacity > 0;
+	 * @ensures getCapacity() == capacity;
+	 * @ensures size() == 0;
+	 */
+	public Leaderboard(int capacity) {
+		if (capacity <= 0) {
+			throw new IllegalArgumentException();
+		}
+		this.capacity = capacity;
+		this.ranking = new ConcurrentSkipListSet<Entry>();
+		this.entries = new ConcurrentHashMap<Post, Entry>();
+		this.minLikes = -1;
+		this.nextSeq = 0;
+	}
+
+	/**
+	 * Renvoie le classement global, ou null s'il n'est pas activé.
+	 *
+	 * @return le classement global ou null
+	 *
+	 * @pure
+	 */
+	public static Leaderboard getGlobal() {
+		return global;
+	}
+
+	/**
+	 * Active un nouveau classement global des capacity Post les plus likés,
+	 * auquel sont signalés les likes ultérieurs de tous les SimplePost. Les Post
+	 * likés avant l'activation n'y figurent qu'à partir de leur like suivant.
+	 *
+	 * @param capacity nombre de Post du classement global
+	 *
+	 * @return le nouveau classement global
+	 *
+	 * @throws IllegalArgumentException si capacity <= 0
+	 *
+	 * @requires capacity > 0;
+	 * @ensures getGlobal() == \result;
+	 * @ensures \result.size() == 0;
+	 */
+	public static Leaderboard enableGlobal(int capacity) {
+		Leaderboard board = new Leaderboard(capacity);
+		global = board;
+		return board;
+	}
+
+	/**
+	 * Désactive le classement global.
+	 *
+	 * @ensures getGlobal() == null;
+	 */
+	public static void disableGlobal() {
+		global = null;
+	}
+
+	/**
+	 * Renvoie le nombre maximal de Post de ce classement.
+	 *
+	 * @return le nombre maximal de Post de ce classement
+	 *
+	 * @pure
+	 */
+	public int getCapacity() {
+		return capacity;
+	}
+
+	/**
+	 * Renvoie le nombre de Post de ce classement.
+	 *
+	 * @return le nombre de Post de ce classement
+	 *
+	 * @pure
+	 */
+	public int size() {
+		return entries.size();
+	}
+
+	/**
+	 * Renvoie true si le Post spécifié fait partie de ce classement.
+	 *
+	 * @param p le Post cherché
+	 *
+	 * @return true si le Post spécifié fait partie de ce classement
+	 *
+	 * @pure
+	 */
+	public boolean contains(Post p) {
+		return p != null && entries.containsKey(p);
+	}
+
+	/**
+	 * Signale à ce classement le nombre de likes courant du Post spécifié. Le
+	 * Post est classé s'il fait partie des getCapacity() Post les plus likés; un
+	 * nombre de likes inférieur à celui déjà connu pour ce Post est ignoré.
+	 *
+	 * @param p le Post dont le nombre de likes a changé
+	 *
+	 * @throws NullPointerException si p est null
+	 *
+	 * @requires p != null;
+	 */
+	public void update(Post p) {
+		int likes = p.getLikeNumber();
+		// Moins de likes que tous les Post classés: écarté sans verrou
+		if (likes < minLikes) {
+			return;
+		}
+		while (true) {
+			Entry entry = entries.get(p);
+			if (entry != null) {
+				// Post classé: remplacement sans verrou de son entrée
+				if (entry.likes >= likes) {
+					return;
+				}
+				Entry updated = new Entry(p, likes, entry.seq);
+				ranking.add(updated);
+				if (entries.replace(p, entry, updated)) {
+					ranking.remove(entry);
+					return;
+				}
+				// Entrée remplacée ou évincée entre-temps
+				ranking.remove(updated);
+				continue;
+			}
+			synchronized (this) {
+				if (entries.containsKey(p)) {
+					continue;
+				}
+				admit(p, likes);
+				return;
+			}
+		}
+	}
+
+	/**
+	 * Classe le Post spécifié, non classé, s'il précède le dernier Post classé
+	 * dans l'ordre du classement, en évinçant ce dernier si le classement est
+	 * plein. Appelée sous le verrou du classement.
+	 */
+	private void admit(Post p, int likes) {
+		Entry candidate = new Entry(p, likes, nextSeq);
+		if (entries.size() >= capacity) {
+			while (true) {
+				Entry last = lastEntry();
+				if (candidate.compareTo(last) >= 0) {
+					return;
+				}
+				// Échoue si l'entrée de last vient d'être remplacée
+				if (entries.remove(last.post, last)) {
+					ranking.remove(last);
+					break;
+				}
+			}
+		}
+		nextSeq++;
+		ranking.add(candidate);
+		entries.put(p, candidate);
+		minLikes = entries.size() >= capacity ? lastEntry().likes : -1;
+	}
+
+	/**
+	 * Renvoie la dernière entrée courante du classement, ou null s'il est vide.
+	 */
+	private Entry lastEntry() {
+		for (Entry entry : ranking.descendingSet()) {
+			if (entries.get(entry.post) == entry) {
+				return entry;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Renvoie les k premiers Post de ce classement, du plus liké au moins liké,
+	 * deux Post ayant autant de likes étant classés du plus récent au plus
+	 * ancien.
+	 *
+	 * @param k nombre maximal de Post renvoyés
+	 *
+	 * @return les k premiers Post de ce classement
+	 *
+	 * @throws IllegalArgumentException si k < 0
+	 *
+	 * @requires k >= 0;
+	 * @ensures \result.size() == Math.min(k, size());
+	 *
+	 * @pure
+	 */
+	public List<Post> top(int k) {
+		if (k < 0) {
+			throw new IllegalArgumentException();
+		}
+		List<Post> top = new ArrayList<Post>(Math.min(k, capacity));
+		for (Entry entry : ranking) {
+			if (top.size() == k) {
+				break;
+			}
+			// Les entrées en cours de remplacement sont ignorées
+			if (entries.get(entry.post) == entry) {
+				top.add(entry.post);
+			}
+		}
+		return top;
+	}
+
+	/**
+	 * Renvoie tous les Post de ce classement, du plus liké au moins liké.
+	 *
+	 * @return les Post de ce classement
+	 *
+	 * @ensures \result.size() == size();
+	 *
+	 * @pure
+	 */
+	public List<Post> top() {
+		return top(capacity);
+	}
+
+	/**
+	 * Une entrée du classement: un Post, son nombre de likes et son numéro
+	 * d'entrée dans le classement, qui départage les Post de même date.
+	 */
+	private static final class Entry implements Comparable<Entry> {
+		private final Post post;
+		private final int likes;
+		private final long seq;
+
+		Entry(Post post, int likes, long seq) {
+			this.post = post;
+			this.likes = likes;
+			this.seq = seq;
+		}
+
+		@Override
+		public int compareTo(Entry e) {
+			if (likes != e.likes) {
+				return likes > e.likes ? -1 : 1;
+			}
+			int cmp = e.post.getDate().compareTo(post.getDate());
+			if (cmp != 0) {
+				return cmp;
+			}
+			return Long.compare(seq, e.seq);
+		}
+	}
+}
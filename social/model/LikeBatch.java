@@ -0,0 +1,124 @@
+package social.model;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Un lot de likes à ajouter à plusieurs Post, destiné à l'ingestion de likes
+ * reçus par paquets.
+ *
+ * Les likes ajoutés au lot par add(Post, User) sont regroupés par Post; apply()
+ * les ajoute ensuite Post par Post au moyen de Post.addLikesFrom(Collection),
+ * qui permet à chaque Post d'effectuer l'ajout de tous ses likes en une seule
+ * étape (un SimplePost ne prend alors qu'un verrou par sous-ensemble de
+ * likers, voir ConcurrentUserSet). Un même lot peut être rempli et appliqué
+ * plusieurs fois.
+ *
+ * Cette classe n'est pas synchronisée: un lot doit être rempli par un seul
+ * thread, plusieurs lots pouvant être appliqués simultanément aux mêmes Post.
+ *
+ * @invariant size() >= 0;
+ * @invariant getPostNb() >= 0 && getPostNb() <= size();
+ */
+public final class LikeBatch {
+	private final Map<Post, List<User>> likes;
+	private int size;
+
+	/**
+	 * Initialise un lot de likes vide.
+	 *
+	 * @ensures size() == 0;
+	 * @ensures getPostNb() == 0;
+	 */
+	public LikeBatch() {
+		this.likes = new HashMap<Post, List<User>>();
+		this.size = 0;
+	}
+
+	/**
+	 * Ajoute à ce lot le like du Post spécifié par l'User spécifié.
+	 *
+	 * @param p le Post "liké"
+	 * @param u l'User ayant "liké" le Post
+	 *
+	 * @throws NullPointerException si l'un des arguments est null
+	 *
+	 * @ensures size() == \old(size()) + 1;
+	 */
+	public void add(Post p, User u) {
+		if (p == null || u == null) {
+			throw new NullPointerException();
+		}
+		likes.computeIfAbsent(p, k -> new ArrayList<User>()).add(u);
+		size++;
+	}
+
+	/**
+	 * Renvoie le nombre de likes de ce lot, y compris les likes répétés.
+	 *
+	 * @return le nombre de likes de ce lot
+	 *
+	 * @pure
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Renvoie le nombre de Post distincts concernés par les likes de ce lot.
+	 *
+	 * @return le nombre de Post de ce lot
+	 *
+	 * @pure
+	 */
+	public int getPostNb() {
+		return likes.size();
+	}
+
+	/**
+	 * Ajoute les likes de ce lot à leurs Post puis vide ce lot.
+	 *
+	 * @return le nombre de likes nouveaux, c'est-à-dire ne figurant pas déjà
+	 *         parmi les likes de leur Post
+	 *
+	 * @ensures \result >= 0 && \result <= \old(size());
+	 * @ensures size() == 0;
+	 * @ensures getPostNb() == 0;
+	 */
+	public int apply() {
+		int added = apply(likes);
+		likes.clear();
+		size = 0;
+		return added;
+	}
+
+	/**
+	 * Ajoute à chaque Post de la Map spécifiée les likes des User qui lui sont
+	 * associés, au moyen d'un appel à Post.addLikesFrom(Collection) par Post.
+	 *
+	 * @param likes les User ayant "liké" chaque Post
+	 *
+	 * @return le nombre de likes nouveaux, c'est-à-dire ne figurant pas déjà
+	 *         parmi les likes de leur Post
+	 *
+	 * @throws NullPointerException si likes est null ou contient une clé, une
+	 *                              valeur ou un User null
+	 *
+	 * @ensures (\forall Post p; likes.containsKey(p); (\forall User u;
+	 *          likes.get(p).contains(u); p.hasLikeFrom(u)));
+	 * @ensures \result >= 0;
+	 */
+	public static int apply(Map<? extends Post, ? extends Collection<User>> likes) {
+		int added = 0;
+		for (Map.Entry<? extends Post, ? extends Collection<User>> entry : likes.entrySet()) {
+			if (entry.getKey() == null) {
+				throw new NullPointerException();
+			}
+			added += entry.getKey().addLikesFrom(entry.getValue());
+		}
+		return added;
+	}
+}
@@ -0,0 +1,188 @@
+package social.model;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NavigableSet;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * L'index des Post "likés" par un User, triés par date du plus récent au plus
+ * ancien.
+ *
+ * Chaque like nouveau est enregistré par SimplePost.addLikeFrom(User) (et par
+ * les ajouts par lots): la liste des Post likés par un User s'obtient ainsi
+ * sans parcourir l'ensemble des Post. Les entrées sont mémorisées dans un
+ * ConcurrentSkipListSet ordonné par date de Post, deux Post de même date étant
+ * départagés par l'ordre d'enregistrement de leur like: l'ajout coûte
+ * O(log n), la recherche du début d'une page O(log n) plus le nombre de Post de
+ * même date que le dernier Post de la page précédente, et le parcours d'une
+ * page O(taille de la page).
+ *
+ * L'index sert aussi à tester si l'User a liké un Post donné (contains(Post)),
+ * en O(log n) plus le nombre de Post de même date: les Post en mode approché
+ * (voir Post.hasApproximateLikes()) ne mémorisent plus leurs likers au-delà de
+ * leur seuil, et s'en remettent à l'index de chaque liker.
+ *
+ * Les enregistrements et les lectures peuvent être effectués simultanément
+ * depuis plusieurs threads.
+ *
+ * @invariant size() >= 0;
+ */
+final class LikedPostIndex {
+	private final NavigableSet<Entry> entries;
+	private final AtomicLong sequence;
+
+	/**
+	 * Initialise un index vide.
+	 *
+	 * @ensures size() == 0;
+	 */
+	LikedPostIndex() {
+		this.entries = new ConcurrentSkipListSet<Entry>();
+		this.sequence = new AtomicLong();
+	}
+
+	/**
+	 * Enregistre le Post spécifié dans cet index. Un même Post ne doit être
+	 * enregistré qu'une fois, c'est-à-dire lors de son premier like par l'User de
+	 * cet index.
+	 *
+	 * @param p le Post "liké"
+	 *
+	 * @requires p != null;
+	 * @ensures size() == \old(size()) + 1;
+	 */
+	void add(Post p) {
+		entries.add(new Entry(p, sequence.incrementAndGet()));
+	}
+
+	/**
+	 * Enregistre le Post spécifié dans cet index s'il n'y figure pas déjà, et
+	 * renvoie true s'il a été enregistré. Les appels simultanés pour un même Post
+	 * n'enregistrent celui-ci qu'une fois.
+	 *
+	 * @param p le Post "liké"
+	 *
+	 * @return true si p ne figurait pas dans cet index
+	 *
+	 * @requires p != null;
+	 * @ensures contains(p);
+	 * @ensures \result <==> !\old(contains(p));
+	 */
+	synchronized boolean addIfAbsent(Post p) {
+		if (entryOf(p) != null) {
+			return false;
+		}
+		add(p);
+		return true;
+	}
+
+	/**
+	 * Renvoie true si le Post spécifié figure dans cet index.
+	 *
+	 * @param p le Post cherché
+	 *
+	 * @return true si p figure dans cet index
+	 *
+	 * @requires p != null;
+	 *
+	 * @pure
+	 */
+	boolean contains(Post p) {
+		return entryOf(p) != null;
+	}
+
+	/**
+	 * Renvoie le nombre de Post de cet index.
+	 *
+	 * @return le nombre de Post de cet index
+	 *
+	 * @pure
+	 */
+	int size() {
+		return entries.size();
+	}
+
+	/**
+	 * Renvoie au plus limit Post de cet index, du plus récent au plus ancien,
+	 * situés après le Post after dans l'ordre de cet index (ou les plus récents si
+	 * after est null). Les Post de même date que after qui le suivent dans cet
+	 * ordre sont inclus: l'entrée de after, retrouvée parmi les entrées de sa
+	 * date, sert de position de début de la page. Si after ne figure pas dans
+	 * cet index, la page commence au premier Post de date strictement antérieure.
+	 *
+	 * @param limit nombre maximal de Post renvoyés
+	 * @param after le dernier Post de la page précédente, ou null
+	 *
+	 * @return une page des Post de cet index
+	 *
+	 * @requires limit > 0;
+	 * @ensures \result.size() <= limit;
+	 * @ensures after != null ==> !\result.contains(after);
+	 *
+	 * @pure
+	 */
+	List<Post> page(int limit, Post after) {
+		NavigableSet<Entry> tail = entries;
+		if (after != null) {
+			tail = entries.tailSet(find(after), false);
+		}
+		List<Post> page = new ArrayList<Post>(Math.min(limit, 64));
+		for (Entry entry : tail) {
+			if (page.size() == limit) {
+				break;
+			}
+			page.add(entry.post);
+		}
+		return page;
+	}
+
+	/**
+	 * Renvoie l'entrée du Post spécifié, cherchée parmi les entrées de même date,
+	 * ou à défaut une sonde placée après toutes les entrées de cette date.
+	 */
+	private Entry find(Post p) {
+		Entry entry = entryOf(p);
+		return entry != null ? entry : new Entry(p, Long.MIN_VALUE);
+	}
+
+	/**
+	 * Renvoie l'entrée du Post spécifié, cherchée parmi les entrées de même date,
+	 * ou null s'il ne figure pas dans cet index.
+	 */
+	private Entry entryOf(Post p) {
+		// Sonde placée avant toutes les entrées de même date que p
+		for (Entry entry : entries.tailSet(new Entry(p, Long.MAX_VALUE), true)) {
+			if (!entry.post.getDate().equals(p.getDate())) {
+				break;
+			}
+			if (entry.post.equals(p)) {
+				return entry;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Une entrée de l'index: un Post et le numéro d'ordre de son enregistrement.
+	 */
+	private static final class Entry implements Comparable<Entry> {
+		private final Post post;
+		private final long seq;
+
+		Entry(Post post, long seq) {
+			this.post = post;
+			this.seq = seq;
+		}
+
+		@Override
+		public int compareTo(Entry e) {
+			int cmp = e.post.getDate().compareTo(post.getDate());
+			if (cmp != 0) {
+				return cmp;
+			}
+			return Long.compare(e.seq, seq);
+		}
+	}
+}
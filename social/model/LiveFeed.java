@@ -0,0 +1,319 @@
+package social.model;
+
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.SubmissionPublisher;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Le NewsFeed "en direct" d'un User: un Flow.Publisher transmettant à ses
+ * abonnés chaque Post publié par cet User ou par un User auquel il est abonné,
+ * au moment de sa publication (voir User.liveFeed()).
+ *
+ * La transmission respecte la demande de chaque abonné (Flow.Subscription
+ * .request(long)): les Post non encore demandés sont conservés dans un tampon
+ * borné propre à chaque abonné. Lorsque le tampon d'un abonné est plein, les
+ * nouveaux Post lui sont retirés (politique "drop newest") et comptés par
+ * getDroppedCount(): la publication d'un Post n'attend jamais un abonné lent.
+ *
+ * Un abonné implémentant GapSubscriber est informé de chaque suite de Post qui
+ * lui ont été retirés, à sa place parmi les Post reçus, par un unique appel à
+ * GapSubscriber.onGap(Instant, Instant, long) indiquant les dates extrêmes de
+ * ces Post: il peut les retrouver dans User.newsFeed(from, to.plusNanos(1)).
+ *
+ * @invariant getBufferCapacity() > 0;
+ * @invariant getDroppedCount() >= 0 && getPublishedCount() >= 0;
+ */
+public final class LiveFeed implements Flow.Publisher<Post>, AutoCloseable {
+	private final SubmissionPublisher<Entry> publisher;
+	private final LongAdder published, dropped;
+	// Numéro de la prochaine publication, attribué sous le verrou de ce LiveFeed
+	private long nextSeq;
+
+	/**
+	 * Un abonné à un LiveFeed informé des Post qui lui ont été retirés faute de
+	 * place dans son tampon.
+	 */
+	public interface GapSubscriber extends Flow.Subscriber<Post> {
+		/**
+		 * Signale que droppedNb Post consécutifs, publiés entre le Post reçu par le
+		 * précédent appel à onNext et celui reçu par le suivant, ont été retirés à
+		 * cet abonné. Leurs dates sont comprises entre from et to inclus: tant que
+		 * les abonnements du lecteur n'ont pas changé, ils figurent tous dans
+		 * User.newsFeed(from, to.plusNanos(1)), éventuellement avec des Post déjà
+		 * reçus de même date. Appelé par le thread appelant onNext, avant onNext
+		 * pour le Post suivant et avant onComplete.
+		 *
+		 * @param from      la date du plus ancien Post retiré
+		 * @param to        la date du plus récent Post retiré
+		 * @param droppedNb le nombre de Post retirés
+		 *
+		 * @requires !from.isAfter(to);
+		 * @requires droppedNb > 0;
+		 */
+		void onGap(Instant from, Instant to, long droppedNb);
+	}
+
+	/**
+	 * Initialise un LiveFeed transmettant les Post à ses abonnés au moyen de
+	 * l'Executor spécifié, avec un tampon d'au plus bufferCapacity Post par
+	 * abonné.
+	 *
+	 * @param executor       l'Executor transmettant les Post aux abonnés
+	 * @param bufferCapacity nombre maximal de Post en attente par abonné
+	 *
+	 * @requires executor != null;
+	 * @requires bufferCapacity > 0;
+	 */
+	LiveFeed(Executor executor, int bufferCapacity) {
+		this.publisher = new SubmissionPublisher<Entry>(executor, bufferCapacity);
+		this.published = new LongAdder();
+		this.dropped = new LongAdder();
+	}
+
+	/**
+	 * Abonne le Flow.Subscriber spécifié à ce LiveFeed: il recevra les Post
+	 * publiés à partir de maintenant, dans la limite de sa demande, et, s'il
+	 * implémente GapSubscriber, des Post qui lui sont retirés.
+	 *
+	 * @param subscriber l'abonné
+	 *
+	 * @throws NullPointerException si subscriber est null
+	 */
+	@Override
+	public void subscribe(Flow.Subscriber<? super Post> subscriber) {
+		if (subscriber == null) {
+			throw new NullPointerException();
+		}
+		publisher.subscribe(new Relay(subscriber));
+	}
+
+	/**
+	 * Transmet le Post spécifié aux abonnés de ce LiveFeed sans jamais attendre:
+	 * il est retiré aux abonnés dont le tampon est plein. Les publications sont
+	 * numérotées dans l'ordre de leur offre, de sorte que chaque abonné puisse
+	 * situer les Post qui lui sont retirés parmi ceux qu'il reçoit.
+	 *
+	 * @param p le Post publié
+	 *
+	 * @requires p != null;
+	 */
+	void publish(Post p) {
+		if (publisher.isClosed()) {
+			return;
+		}
+		published.increment();
+		synchronized (this) {
+			try {
+				publisher.offer(new Entry(nextSeq++, p), (subscriber, entry) -> {
+					dropped.increment();
+					((Relay) subscriber).recordDrop(entry);
+					return false;
+				});
+			} catch (IllegalStateException e) {
+				// Fermé entre le test et l'offre
+			}
+		}
+	}
+
+	/**
+	 * Renvoie le nombre maximal de Post en attente par abonné.
+	 *
+	 * @return le nombre maximal de Post en attente par abonné
+	 *
+	 * @pure
+	 */
+	public int getBufferCapacity() {
+		return publisher.getMaxBufferCapacity();
+	}
+
+	/**
+	 * Renvoie le nombre d'abonnés de ce LiveFeed.
+	 *
+	 * @return le nombre d'abonnés de ce LiveFeed
+	 *
+	 * @pure
+	 */
+	public int getSubscriberNb() {
+		return publisher.getNumberOfSubscribers();
+	}
+
+	/**
+	 * Renvoie le nombre de Post publiés vers ce LiveFeed.
+	 *
+	 * @return le nombre de Post publiés vers ce LiveFeed
+	 *
+	 * @pure
+	 */
+	public long getPublishedCount() {
+		return published.sum();
+	}
+
+	/**
+	 * Renvoie le nombre de Post retirés à un abonné dont le tampon était plein,
+	 * chaque abonné comptant pour un.
+	 *
+	 * @return le nombre de Post retirés aux abonnés
+	 *
+	 * @pure
+	 */
+	public long getDroppedCount() {
+		return dropped.sum();
+	}
+
+	/**
+	 * Renvoie true si ce LiveFeed est fermé.
+	 *
+	 * @return true si ce LiveFeed est fermé; false sinon
+	 *
+	 * @pure
+	 */
+	public boolean isClosed() {
+		return publisher.isClosed();
+	}
+
+	/**
+	 * Ferme ce LiveFeed: ses abonnés reçoivent onComplete() après les Post en
+	 * attente, et les publications ultérieures sont ignorées.
+	 *
+	 * @ensures isClosed();
+	 */
+	@Override
+	public void close() {
+		publisher.close();
+	}
+
+	/**
+	 * Un Post publié et son numéro de publication.
+	 */
+	private static final class Entry {
+		private final long seq;
+		private final Post post;
+
+		Entry(long seq, Post post) {
+			this.seq = seq;
+			this.post = post;
+		}
+	}
+
+	/**
+	 * Une suite de publications consécutives retirées à un abonné.
+	 */
+	private static final class Gap {
+		private final long firstSeq;
+		private long lastSeq, count;
+		private Instant from, to;
+
+		Gap(Entry e) {
+			this.firstSeq = e.seq;
+			this.lastSeq = e.seq;
+			this.count = 1;
+			this.from = e.post.getDate();
+			this.to = from;
+		}
+
+		void extend(Entry e) {
+			Instant date = e.post.getDate();
+			lastSeq = e.seq;
+			count++;
+			if (date.isBefore(from)) {
+				from = date;
+			}
+			if (date.isAfter(to)) {
+				to = date;
+			}
+		}
+	}
+
+	/**
+	 * L'abonné interne au SubmissionPublisher d'un abonné du LiveFeed: il
+	 * transmet les Post reçus et, si l'abonné est un GapSubscriber, mémorise les
+	 * suites de publications retirées pour les lui signaler à leur place, avant
+	 * le premier Post reçu qui leur est postérieur ou dès que le Post qui les
+	 * précède immédiatement a été reçu.
+	 */
+	private static final class Relay implements Flow.Subscriber<Entry> {
+		private final Flow.Subscriber<? super Post> subscriber;
+		private final GapSubscriber gapSubscriber;
+		// Suites retirées non encore signalées, gardées par le verrou de ce Relay
+		private final ArrayDeque<Gap> gaps;
+
+		Relay(Flow.Subscriber<? super Post> subscriber) {
+			this.subscriber = subscriber;
+			this.gapSubscriber = subscriber instanceof GapSubscriber ? (GapSubscriber) subscriber : null;
+			this.gaps = new ArrayDeque<Gap>();
+		}
+
+		/**
+		 * Mémorise la publication spécifiée, retirée à cet abonné. Appelé sous le
+		 * verrou du LiveFeed, dans l'ordre des publications.
+		 */
+		synchronized void recordDrop(Entry e) {
+			if (gapSubscriber == null) {
+				return;
+			}
+			Gap last = gaps.peekLast();
+			if (last != null && last.lastSeq == e.seq - 1) {
+				last.extend(e);
+			} else {
+				gaps.add(new Gap(e));
+			}
+		}
+
+		/**
+		 * Retire et renvoie la plus ancienne suite non signalée si elle commence au
+		 * plus à la publication maxFirstSeq, null sinon.
+		 */
+		private synchronized Gap takeGap(long maxFirstSeq) {
+			Gap gap = gaps.peek();
+			return gap != null && gap.firstSeq <= maxFirstSeq ? gaps.poll() : null;
+		}
+
+		private void signalGaps(long maxFirstSeq) {
+			if (gapSubscriber == null) {
+				return;
+			}
+			Gap gap;
+			while ((gap = takeGap(maxFirstSeq)) != null) {
+				gapSubscriber.onGap(gap.from, gap.to, gap.count);
+			}
+		}
+
+		@Override
+		public void onSubscribe(Flow.Subscription subscription) {
+			subscriber.onSubscribe(subscription);
+		}
+
+		@Override
+		public void onNext(Entry e) {
+			signalGaps(e.seq - 1);
+			subscriber.onNext(e.post);
+			signalGaps(e.seq + 1);
+		}
+
+		@Override
+		public void onError(Throwable throwable) {
+			subscriber.onError(throwable);
+		}
+
+		@Override
+		public void onComplete() {
+			signalGaps(Long.MAX_VALUE);
+			subscriber.onComplete();
+		}
+
+		// Un même abonné ne peut être abonné deux fois (voir
+		// SubmissionPublisher.subscribe)
+		@Override
+		public boolean equals(Object o) {
+			return o instanceof Relay && subscriber.equals(((Relay) o).subscriber);
+		}
+
+		@Override
+		public int hashCode() {
+			return subscriber.hashCode();
+		}
+	}
+}
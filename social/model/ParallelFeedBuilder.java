@@ -0,0 +1,245 @@
+package social.model;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Construction parallèle des premiers Post d'un NewsFeed fusionnant les Post
+ * d'un grand nombre de User.
+ *
+ * Les User fusionnés sont répartis en groupes d'au plus getGroupSize() User,
+ * traités par les tâches d'un ForkJoinPool: chaque tâche fusionne les Post des
+ * User de son groupe et n'en conserve que les limit premiers, puis les
+ * résultats partiels sont fusionnés deux à deux. Le résultat est exactement le
+ * préfixe de longueur limit du FusionSortedIterator construit sur le même
+ * ensemble de User avec l'ordre Comparator.reverseOrder(): en cas d'égalité
+ * entre deux Post, celui du User rencontré en premier dans l'ensemble est
+ * énuméré en premier. newsFeed(User, int) fusionne les User par identifiant
+ * croissant, de sorte que ses Post de même date sont ordonnés comme dans
+ * User.newsFeed(), qui les départage par identifiant d'auteur.
+ *
+ * Les tâches ne parcourent que des instantanés des Timeline des User: les
+ * itérateurs natifs des User ne sont ni utilisés ni modifiés.
+ *
+ * @invariant getPool() != null;
+ * @invariant getGroupSize() > 0;
+ */
+public final class ParallelFeedBuilder {
+	/**
+	 * Nombre maximal par défaut de User fusionnés par une même tâche.
+	 */
+	public static final int DEFAULT_GROUP_SIZE = 256;
+
+	private static final Comparator<Post> ORDER = Comparator.reverseOrder();
+
+	private final ForkJoinPool pool;
+	private final int groupSize;
+
+	/**
+	 * Initialise un ParallelFeedBuilder utilisant le ForkJoinPool commun et des
+	 * groupes d'au plus DEFAULT_GROUP_SIZE User.
+	 *
+	 * @ensures getPool() == ForkJoinPool.commonPool();
+	 * @ensures getGroupSize() == DEFAULT_GROUP_SIZE;
+	 */
+	public ParallelFeedBuilder() {
+		this(ForkJoinPool.commonPool(), DEFAULT_GROUP_SIZE);
+	}
+
+	/**
+	 * Initialise un ParallelFeedBuilder utilisant le ForkJoinPool et la taille de
+	 * groupe spécifiés.
+	 *
+	 * @param pool      le ForkJoinPool exécutant les tâches
+	 * @param groupSize nombre maximal de User fusionnés par une même tâche
+	 *
+	 * @throws NullPointerException     si pool est null
+	 * @throws IllegalArgumentException si groupSize <= 0
+	 *
+	 * @requires pool != null;
+	 * @requires groupSize > 0;
+	 * @ensures getPool() == pool;
+	 * @ensures getGroupSize() == groupSize;
+	 */
+	public ParallelFeedBuilder(ForkJoinPool pool, int groupSize) {
+		if (pool == null) {
+			throw new NullPointerException();
+		}
+		if (groupSize <= 0) {
+			throw new IllegalArgumentException();
+		}
+		this.pool = pool;
+		this.groupSize = groupSize;
+	}
+
+	/**
+	 * Renvoie le ForkJoinPool exécutant les tâches de ce ParallelFeedBuilder.
+	 *
+	 * @return le ForkJoinPool de ce ParallelFeedBuilder
+	 *
+	 * @pure
+	 */
+	public ForkJoinPool getPool() {
+		return pool;
+	}
+
+	/**
+	 * Renvoie le nombre maximal de User fusionnés par une même tâche.
+	 *
+	 * @return le nombre maximal de User fusionnés par une même tâche
+	 *
+	 * @pure
+	 */
+	public int getGroupSize() {
+		return groupSize;
+	}
+
+	/**
+	 * Renvoie les limit Post les plus récents du NewsFeed de l'User spécifié,
+	 * c'est-à-dire des Post de cet User et des User auxquels il est abonné. Les
+	 * User sont fusionnés par identifiant croissant: deux Post de même date sont
+	 * énumérés dans l'ordre des identifiants de leurs auteurs, comme dans
+	 * reader.newsFeed(), quel que soit l'ordre d'itération des abonnements.
+	 *
+	 * @param reader l'User dont le NewsFeed est construit
+	 * @param limit  nombre maximal de Post renvoyés
+	 *
+	 * @return les limit premiers Post du NewsFeed de l'User spécifié
+	 *
+	 * @throws NullPointerException     si reader est null
+	 * @throws IllegalArgumentException si limit < 0
+	 *
+	 * @requires reader != null;
+	 * @requires limit >= 0;
+	 * @ensures \result != null;
+	 * @ensures \result.size() <= limit;
+	 * @ensures \result.equals(first limit elements of reader.newsFeed());
+	 * @ensures limit > 0 ==> \result.equals(reader.newsFeed(limit,
+	 *          null).getPosts());
+	 */
+	public List<Post> newsFeed(User reader, int limit) {
+		Set<User> users = new TreeSet<User>(Comparator.comparingInt(User::getId));
+		users.addAll(reader.getSubscriptions());
+		users.add(reader);
+		return firstPosts(users, limit);
+	}
+
+	/**
+	 * Renvoie les limit premiers Post du FusionSortedIterator fusionnant les Post
+	 * des User spécifiés du plus récent au plus ancien.
+	 *
+	 * @param users les User dont les Post sont fusionnés
+	 * @param limit nombre maximal de Post renvoyés
+	 *
+	 * @return les limit premiers Post de new FusionSortedIterator<Post,
+	 *         User>(users, Comparator.reverseOrder())
+	 *
+	 * @throws NullPointerException     si users est null ou contient null
+	 * @throws IllegalArgumentException si limit < 0
+	 *
+	 * @requires users != null && !users.contains(null);
+	 * @requires limit >= 0;
+	 * @ensures \result != null;
+	 * @ensures \result.size() <= limit;
+	 */
+	public List<Post> firstPosts(Set<User> users, int limit) {
+		if (users == null) {
+			throw new NullPointerException();
+		}
+		if (limit < 0) {
+			throw new IllegalArgumentException();
+		}
+		List<List<Post>> sources = new ArrayList<List<Post>>(users.size());
+		for (User u : users) {
+			sources.add(u.timeline().snapshot());
+		}
+		if (limit == 0 || sources.isEmpty()) {
+			return new ArrayList<Post>(0);
+		}
+		return pool.invoke(new MergeTask(sources, 0, sources.size(), limit, groupSize));
+	}
+
+	/**
+	 * Fusion des limit premiers Post des sources d'index low (inclus) à high
+	 * (exclu), par division récursive en deux moitiés tant que le nombre de
+	 * sources dépasse groupSize.
+	 */
+	private static final class MergeTask extends RecursiveTask<List<Post>> {
+		private static final long serialVersionUID = 1L;
+
+		private final List<List<Post>> sources;
+		private final int low, high, limit, groupSize;
+
+		MergeTask(List<List<Post>> sources, int low, int high, int limit, int groupSize) {
+			this.sources = sources;
+			this.low = low;
+			this.high = high;
+			this.limit = limit;
+			this.groupSize = groupSize;
+		}
+
+		@Override
+		protected List<Post> compute() {
+			if (high - low <= groupSize) {
+				return mergeGroup();
+			}
+			int mid = (low + high) >>> 1;
+			MergeTask left = new MergeTask(sources, low, mid, limit, groupSize);
+			MergeTask right = new MergeTask(sources, mid, high, limit, groupSize);
+			left.fork();
+			List<Post> rightPosts = right.compute();
+			return mergeTwo(left.join(), rightPosts);
+		}
+
+		/**
+		 * Fusion séquentielle des sources du groupe, l'index départageant les Post
+		 * égaux comme dans FusionSortedIterator.
+		 */
+		private List<Post> mergeGroup() {
+			int k = high - low;
+			int[] positions = new int[k];
+			SourceQueue heads = new SourceHeap(k, (i, j) -> {
+				int cmp = ORDER.compare(sources.get(low + i).get(positions[i]),
+						sources.get(low + j).get(positions[j]));
+				return cmp != 0 ? cmp : Integer.compare(i, j);
+			});
+			long total = 0;
+			for (int i = 0; i < k; i++) {
+				heads.update(i, !sources.get(low + i).isEmpty());
+				total += sources.get(low + i).size();
+			}
+			List<Post> posts = new ArrayList<Post>((int) Math.min(limit, total));
+			while (posts.size() < limit && !heads.isEmpty()) {
+				int i = heads.peek();
+				List<Post> source = sources.get(low + i);
+				posts.add(source.get(positions[i]));
+				positions[i]++;
+				heads.update(i, positions[i] < source.size());
+			}
+			return posts;
+		}
+
+		/**
+		 * Fusion des résultats de deux groupes consécutifs, le premier groupe
+		 * l'emportant en cas d'égalité.
+		 */
+		private List<Post> mergeTwo(List<Post> left, List<Post> right) {
+			List<Post> posts = new ArrayList<Post>(Math.min(limit, left.size() + right.size()));
+			int i = 0;
+			int j = 0;
+			while (posts.size() < limit && (i < left.size() || j < right.size())) {
+				if (j == right.size() || (i < left.size() && ORDER.compare(left.get(i), right.get(j)) <= 0)) {
+					posts.add(left.get(i++));
+				} else {
+					posts.add(right.get(j++));
+				}
+			}
+			return posts;
+		}
+	}
+}
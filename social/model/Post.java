@@ -1,5 +1,6 @@
 
 import java.time.Instant;
+import java.util.Collection;
 import java.util.ListIterator;
 import java.util.Set;
 
@@ -46,7 +47,8 @@ public interface Post extends Comparable<Post>, Iterable<User> {
 	 * 
 	 * @return le nombre de like de ce Post
 	 * 
-	 * @ensures \result == getLikers().size();
+	 * @ensures !hasApproximateLikes() ==> \result == getLikers().size();
+	 * @ensures hasApproximateLikes() ==> \result >= getLikers().size();
 	 * 
 	 * @pure
 	 */
@@ -60,7 +62,8 @@ public interface Post extends Comparable<Post>, Iterable<User> {
 	 * @return true si l'utilisateur spécifié fait partie des "likers" de ce Post;
 	 *         false sinon
 	 * 
-	 * @ensures \result <==> getLikers().contains(u);
+	 * @ensures !hasApproximateLikes() ==> (\result <==> getLikers().contains(u));
+	 * @ensures getLikers().contains(u) ==> \result;
 	 * 
 	 * @pure
 	 */
@@ -80,8 +83,10 @@ public interface Post extends Comparable<Post>, Iterable<User> {
 	 * @requires u != null;
 	 * @ensures hasLikeFrom(u);
 	 * @ensures \result <==> !\old(hasLikeFrom(u));
-	 * @ensures \result ==> (getLikeNumber() == \old(getLikeNumber() + 1));
-	 * @ensures !\result ==> (getLikeNumber() == \old(getLikeNumber()));
+	 * @ensures !hasApproximateLikes() ==> (\result ==> (getLikeNumber() ==
+	 *          \old(getLikeNumber() + 1)));
+	 * @ensures !hasApproximateLikes() ==> (!\result ==> (getLikeNumber() ==
+	 *          \old(getLikeNumber())));
 	 * 
 	 */
 	boolean addLikeFrom(User u);
@@ -92,14 +97,48 @@ public interface Post extends Comparable<Post>, Iterable<User> {
 	 * @return une vue non modifiable de l'ensemble des "likers" de ce Post
 	 * 
 	 * @ensures \result != null;
-	 * @ensures (\forall User u; hasLikeFrom(u); \result.contains(u));
+	 * @ensures !hasApproximateLikes() ==> (\forall User u; hasLikeFrom(u);
+	 *          \result.contains(u));
 	 * @ensures (\forall User u; \result.contains(u); hasLikeFrom(u));
-	 * @ensures \result.size() == getLikeNumber();
+	 * @ensures !hasApproximateLikes() ==> \result.size() == getLikeNumber();
 	 * 
 	 * @pure
 	 */
 	Set<User> getLikers();
 
+	/**
+	 * Ajoute les utilisateurs spécifiés à l'ensemble des utilisateurs ayant
+	 * "liké" ce message et renvoie le nombre de likes nouveaux. Équivalent à
+	 * l'appel de addLikeFrom(User) pour chacun des utilisateurs, mais les
+	 * implémentations peuvent regrouper les ajouts afin de les effectuer en une
+	 * seule étape.
+	 * 
+	 * @param users utilisateurs ayant "liké" ce message
+	 * @return le nombre d'utilisateurs ne faisant pas déjà partie des "likers"
+	 * 
+	 * @throws NullPointerException si l'argument spécifié est null ou contient
+	 *                              null
+	 * 
+	 * @requires users != null && !users.contains(null);
+	 * @ensures (\forall User u; users.contains(u); hasLikeFrom(u));
+	 * @ensures \result >= 0 && \result <= users.size();
+	 * @ensures !hasApproximateLikes() ==> (getLikeNumber() == \old(getLikeNumber()) + \result);
+	 */
+	default int addLikesFrom(Collection<User> users) {
+		for (User u : users) {
+			if (u == null) {
+				throw new NullPointerException();
+			}
+		}
+		int added = 0;
+		for (User u : users) {
+			if (addLikeFrom(u)) {
+				added++;
+			}
+		}
+		return added;
+	}
+
 	/**
 	 * Renvoie un iterateur sur l'ensemble des "likers" de ce Post. L'iterateur
 	 * renvoyé interdit toute modification de l'ensemble.
@@ -113,6 +152,23 @@ public interface Post extends Comparable<Post>, Iterable<User> {
 	 */
 	ListIterator<User> iterator();
 
+	/**
+	 * Renvoie true si le nombre de likes de ce Post n'est plus connu
+	 * qu'approximativement. Dans ce mode, getLikeNumber() renvoie une estimation
+	 * du nombre de likers, d'erreur relative bornée, et la mémoire occupée par ce
+	 * Post ne croît plus avec ses likes; hasLikeFrom(User) et addLikeFrom(User)
+	 * restent exacts, mais getLikers() et iterator() peuvent se réduire aux
+	 * likers connus avant le passage dans ce mode.
+	 * 
+	 * @return true si le nombre de likes de ce Post n'est connu
+	 *         qu'approximativement
+	 * 
+	 * @pure
+	 */
+	default boolean hasApproximateLikes() {
+		return false;
+	}
+
 	/**
 	 * Compare ce Post avec le Post spécifié selon l'ordre de leurs dates de
 	 * création.
@@ -0,0 +1,248 @@
+package social.model;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Construction d'une page de NewsFeed par fusion, au moment de la lecture, des
+ * Timeline des User fusionnés.
+ *
+ * Seuls les premiers Post de chaque Timeline à partir de la position
+ * mémorisée par le FeedCursor sont examinés: après une initialisation en O(k),
+ * k étant le nombre de User fusionnés, chaque Post de la page coûte O(log k).
+ * Les itérateurs intégrés des User ne sont ni utilisés ni modifiés.
+ *
+ * Chaque Timeline est lue dans un instantané (voir Timeline.snapshot()) pris
+ * une fois par page: les positions étant comptées depuis le plus récent Post,
+ * un Post publié simultanément par un des User décalerait sinon les positions
+ * au milieu de la fusion, répétant ou omettant des Post, et fausserait le
+ * nombre de Post restants mémorisé par le FeedCursor. Les Post publiés pendant
+ * la construction de la page sont ainsi ignorés, comme ceux publiés après elle,
+ * jusqu'à la prochaine première page.
+ *
+ * En mode hybride, les Post d'une Inbox sont fusionnés de la même manière avec
+ * les Timeline des User dont les Post ne sont pas recopiés dans les Inbox, lues
+ * elles aussi dans un instantané.
+ *
+ * Quel que soit le mode, les Post sont énumérés selon un même ordre total (voir
+ * compare(Post, User, Post, User)): deux Post de même date sont ordonnés selon
+ * l'identifiant de leur auteur, de sorte qu'une page reprend exactement après
+ * le dernier Post et le dernier auteur mémorisés par le FeedCursor.
+ */
+final class PullFeed {
+
+	private PullFeed() {
+	}
+
+	/**
+	 * Renvoie la page de taille maximale limit du NewsFeed fusionnant les Post des
+	 * User spécifiés, commençant après la position spécifiée.
+	 *
+	 * @param sources les User dont les Post sont fusionnés
+	 * @param limit   le nombre maximal de Post de la page
+	 * @param after   la position de début de la page, ou null pour la première
+	 *                page
+	 *
+	 * @return la page demandée
+	 *
+	 * @requires sources != null && !sources.contains(null);
+	 * @requires limit > 0;
+	 * @ensures \result != null;
+	 * @ensures \result.getPosts().size() <= limit;
+	 */
+	static FeedPage page(List<User> sources, int limit, FeedCursor after) {
+		int k = sources.size();
+		List<List<Post>> timelines = new ArrayList<List<Post>>(k);
+		int[] positions = new int[k];
+		for (int i = 0; i < k; i++) {
+			User u = sources.get(i);
+			timelines.add(u.timeline().snapshot());
+			positions[i] = startIndex(u, timelines.get(i), after);
+		}
+		SourceQueue heads = new SourceHeap(k, (i, j) -> compare(timelines.get(i).get(positions[i]), sources.get(i),
+				timelines.get(j).get(positions[j]), sources.get(j)));
+		for (int i = 0; i < k; i++) {
+			heads.update(i, positions[i] < timelines.get(i).size());
+		}
+		List<Post> posts = new ArrayList<Post>(limit);
+		User lastAuthor = null;
+		while (posts.size() < limit && !heads.isEmpty()) {
+			int i = heads.peek();
+			posts.add(timelines.get(i).get(positions[i]));
+			lastAuthor = sources.get(i);
+			positions[i]++;
+			heads.update(i, positions[i] < timelines.get(i).size());
+		}
+		if (heads.isEmpty()) {
+			return new FeedPage(posts, null, FeedPath.PULL);
+		}
+		Map<User, Integer> remaining = new HashMap<User, Integer>(2 * k);
+		for (int i = 0; i < k; i++) {
+			remaining.put(sources.get(i), timelines.get(i).size() - positions[i]);
+		}
+		return new FeedPage(posts, new FeedCursor(remaining, posts.get(posts.size() - 1), lastAuthor),
+				FeedPath.PULL);
+	}
+
+	/**
+	 * Renvoie la page de taille maximale limit du NewsFeed fusionnant les Post
+	 * spécifiés (triés du plus récent au plus ancien) dont l'auteur n'appartient
+	 * pas à pulled et ceux des User de pulled, commençant après le dernier Post
+	 * énuméré par la position spécifiée. Si bound n'est pas null, les Post des
+	 * User de pulled qui suivent bound (publié par boundAuthor) dans l'ordre du
+	 * NewsFeed sont ignorés.
+	 *
+	 * Les Post recopiés écartés sont sautés au fil de la fusion: la page coûte
+	 * O(log n) pour se positionner parmi les n Post recopiés, puis O(log k) par
+	 * Post énuméré ou écarté.
+	 *
+	 * @param pushed        les Post recopiés, du plus récent au plus ancien
+	 * @param pushedAuthors les auteurs des Post recopiés, dans le même ordre
+	 * @param pulled        les User dont les Post sont fusionnés
+	 * @param bound         le plus ancien Post pouvant être énuméré, ou null
+	 * @param boundAuthor   l'auteur de bound, ou null
+	 * @param limit         le nombre maximal de Post de la page
+	 * @param after         la position de début de la page, ou null pour la
+	 *                      première page
+	 *
+	 * @return la page demandée
+	 *
+	 * @requires pushed != null && !pushed.contains(null);
+	 * @requires pushedAuthors != null && pushedAuthors.size() == pushed.size();
+	 * @requires pulled != null && !pulled.contains(null);
+	 * @requires limit > 0;
+	 * @ensures \result != null;
+	 * @ensures \result.getPosts().size() <= limit;
+	 */
+	static FeedPage page(List<Post> pushed, List<User> pushedAuthors, Set<User> pulled, Post bound,
+			User boundAuthor, int limit, FeedCursor after) {
+		int k = pulled.size();
+		List<List<Post>> sources = new ArrayList<List<Post>>(k + 1);
+		User[] owners = new User[k];
+		int[] positions = new int[k + 1];
+		int[] ends = new int[k + 1];
+		int i = 0;
+		for (User u : pulled) {
+			List<Post> timeline = u.timeline().snapshot();
+			sources.add(timeline);
+			owners[i] = u;
+			positions[i] = after == null ? 0 : indexAfter(timeline, u, after.getLastPost(), after.getLastAuthor());
+			ends[i] = bound == null ? timeline.size() : indexAfter(timeline, u, bound, boundAuthor);
+			i++;
+		}
+		sources.add(pushed);
+		ends[k] = pushed.size();
+		positions[k] = skipPulled(pushedAuthors, pulled,
+				after == null ? 0 : indexAfter(pushed, pushedAuthors, after.getLastPost(), after.getLastAuthor()),
+				ends[k]);
+		SourceQueue heads = new SourceHeap(k + 1,
+				(a, b) -> compare(sources.get(a).get(positions[a]), a < k ? owners[a] : pushedAuthors.get(positions[a]),
+						sources.get(b).get(positions[b]), b < k ? owners[b] : pushedAuthors.get(positions[b])));
+		for (i = 0; i <= k; i++) {
+			heads.update(i, positions[i] < ends[i]);
+		}
+		List<Post> posts = new ArrayList<Post>(limit);
+		User lastAuthor = null;
+		while (posts.size() < limit && !heads.isEmpty()) {
+			i = heads.peek();
+			posts.add(sources.get(i).get(positions[i]));
+			lastAuthor = i < k ? owners[i] : pushedAuthors.get(positions[i]);
+			positions[i]++;
+			if (i == k) {
+				positions[k] = skipPulled(pushedAuthors, pulled, positions[k], ends[k]);
+			}
+			heads.update(i, positions[i] < ends[i]);
+		}
+		if (heads.isEmpty()) {
+			return new FeedPage(posts, null, FeedPath.HYBRID);
+		}
+		return new FeedPage(posts,
+				new FeedCursor(Collections.<User, Integer>emptyMap(), posts.get(posts.size() - 1), lastAuthor),
+				FeedPath.HYBRID);
+	}
+
+	/**
+	 * Compare le Post p, publié par a, au Post q, publié par b, selon l'ordre du
+	 * NewsFeed: le plus récent d'abord et, à date égale, celui dont l'auteur a le
+	 * plus petit identifiant. Un User ne pouvant publier deux Post de même date,
+	 * cet ordre est total sur les couples (Post, auteur).
+	 *
+	 * @return un entier négatif si p précède q dans le NewsFeed, positif s'il le
+	 *         suit, 0 si a et b sont le même User et p et q ont la même date
+	 *
+	 * @requires p != null && a != null && q != null && b != null;
+	 */
+	static int compare(Post p, User a, Post q, User b) {
+		int cmp = q.compareTo(p);
+		return cmp != 0 ? cmp : Integer.compare(a.getId(), b.getId());
+	}
+
+	/**
+	 * Renvoie l'index dans l'instantané spécifié de la Timeline de owner du
+	 * premier Post qui suit le Post p, publié par author, dans l'ordre du
+	 * NewsFeed. Une Timeline contenant au plus un Post de chaque date, cet index
+	 * est obtenu en O(log n) par Timeline.indexBefore(List, Instant).
+	 *
+	 * @requires timeline.equals(owner.timeline().snapshot()) au moment de sa prise;
+	 * @requires p != null && author != null;
+	 */
+	static int indexAfter(List<Post> timeline, User owner, Post p, User author) {
+		int i = Timeline.indexBefore(timeline, p.getDate());
+		// Le Post de même date que p, s'il existe, le suit si son auteur a un plus
+		// grand identifiant
+		if (i > 0 && owner.getId() > author.getId() && !timeline.get(i - 1).isAfter(p)) {
+			i--;
+		}
+		return i;
+	}
+
+	/**
+	 * Renvoie le premier index à partir de from dont l'auteur n'appartient pas à
+	 * pulled, ou end s'il n'y en a pas.
+	 */
+	private static int skipPulled(List<User> authors, Set<User> pulled, int from, int end) {
+		while (from < end && pulled.contains(authors.get(from))) {
+			from++;
+		}
+		return from;
+	}
+
+	/**
+	 * Renvoie l'index du premier Post de la liste spécifiée (triée selon l'ordre
+	 * du NewsFeed, avec leurs auteurs) qui suit le Post p, publié par author,
+	 * obtenu par recherche dichotomique.
+	 */
+	private static int indexAfter(List<Post> posts, List<User> authors, Post p, User author) {
+		int low = 0;
+		int high = posts.size();
+		while (low < high) {
+			int mid = (low + high) >>> 1;
+			if (compare(posts.get(mid), authors.get(mid), p, author) > 0) {
+				high = mid;
+			} else {
+				low = mid + 1;
+			}
+		}
+		return low;
+	}
+
+	/**
+	 * Renvoie l'index dans la Timeline spécifiée du premier Post à énumérer après
+	 * la position spécifiée. Un User absent du FeedCursor (nouvel abonnement)
+	 * reprend à son plus récent Post qui suit le dernier Post énuméré.
+	 */
+	private static int startIndex(User u, List<Post> timeline, FeedCursor after) {
+		if (after == null) {
+			return 0;
+		}
+		int remaining = after.remaining(u);
+		if (remaining < 0) {
+			return indexAfter(timeline, u, after.getLastPost(), after.getLastAuthor());
+		}
+		return timeline.size() - remaining;
+	}
+}
@@ -1,9 +1,9 @@
 package social.model;
 
 import java.time.Instant;
-import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
-import java.util.HashSet;
 import java.util.ListIterator;
 import java.util.Set;
 
@@ -11,7 +11,54 @@ public class SimplePost implements Post {
 
     private String texte;
     private Instant creationDate;
-    private Set<User> likedUsers;
+    // Likers mémorisés par leurs identifiants, dans un ensemble compressé
+    // pouvant recevoir des likes de plusieurs threads simultanément; figé lors du
+    // passage en mode approché
+    private final ConcurrentUserSet likers;
+    // Estimation du nombre de likes, à partir du passage en mode approché
+    // (sinon null)
+    private volatile ApproximateLikes approximateLikes;
+    // Premier User ayant publié ce Post, dont le classement est tenu à jour
+    private volatile User owner;
+
+    // Nombre de likes au-delà duquel un SimplePost passe en mode approché
+    private static volatile int approximateLikeThreshold = Integer.MAX_VALUE;
+
+    /**
+     * Renvoie le nombre de likes au-delà duquel le nombre de likes d'un SimplePost
+     * n'est plus connu qu'approximativement (voir Post.hasApproximateLikes()).
+     *
+     * @return le seuil du mode approché
+     */
+    public static int getApproximateLikeThreshold() {
+        return approximateLikeThreshold;
+    }
+
+    /**
+     * Modifie le nombre de likes au-delà duquel le nombre de likes d'un SimplePost
+     * n'est plus connu qu'approximativement. Un SimplePost passe en mode approché lors
+     * du premier like dépassant ce seuil et n'en sort plus; par défaut, ce seuil
+     * vaut Integer.MAX_VALUE et le mode approché n'est jamais utilisé.
+     *
+     * En mode approché, l'ensemble exact des likers cesse de croître: la taille
+     * d'un SimplePost est alors bornée par celle de cet ensemble au seuil plus
+     * les 4 Ko du sketch HyperLogLog comptant les likes (voir ApproximateLikes),
+     * quel que soit le nombre de likes ultérieurs. Chaque like ultérieur n'est
+     * mémorisé que parmi les Post likés de son auteur (voir
+     * User.getLikedPosts(int, Post)), qui décident de sa nouveauté et répondent à
+     * hasLikeFrom(User): l'appartenance reste exacte, et getLikers() se réduit
+     * aux likers antérieurs au passage en mode approché.
+     *
+     * @param threshold le nouveau seuil
+     *
+     * @throws IllegalArgumentException si threshold < 0
+     */
+    public static void setApproximateLikeThreshold(int threshold) {
+        if (threshold < 0) {
+            throw new IllegalArgumentException();
+        }
+        approximateLikeThreshold = threshold;
+    }
 
     public SimplePost(String text) {
         if (text == null) {
@@ -19,7 +66,7 @@ public class SimplePost implements Post {
         }
         this.texte = text;
         this.creationDate = Instant.now();
-        this.likedUsers = new HashSet<User>();
+        this.likers = new ConcurrentUserSet();
     }
 
     public Instant getDate() {
@@ -31,26 +78,153 @@ public class SimplePost implements Post {
     }
 
     public int getLikeNumber() {
-        return this.likedUsers.size();
+        ApproximateLikes approx = this.approximateLikes;
+        if (approx == null) {
+            return this.likers.size();
+        }
+        return (int) Math.min(Integer.MAX_VALUE, Math.max(approx.estimate(), this.likers.size()));
     }
 
     public boolean hasLikeFrom(User u) {
-        return this.likedUsers.contains(u);
+        if (u == null) {
+            return false;
+        }
+        if (this.likers.containsId(u.getId())) {
+            return true;
+        }
+        return this.approximateLikes != null && u.hasRecordedLike(this);
+    }
+
+    public boolean hasApproximateLikes() {
+        return this.approximateLikes != null;
     }
 
     public boolean addLikeFrom(User u) {
         if (u == null) {
             throw new NullPointerException();
         }
-        return this.likedUsers.add(u);
+        int id = u.getId();
+        ApproximateLikes approx = this.approximateLikes;
+        if (approx != null) {
+            // Mode approché: l'ensemble exact est figé, et l'index des Post likés
+            // de u décide seul de la nouveauté du like
+            if (this.likers.containsId(id) || !u.recordLikeIfAbsent(this)) {
+                return false;
+            }
+            approx.add(id);
+            notifyLeaderboards();
+            return true;
+        }
+        // L'ensemble exact décide seul de la nouveauté du like, de sorte qu'un
+        // like n'est indexé et signalé qu'une fois
+        if (!this.likers.addId(id)) {
+            return false;
+        }
+        if (!recordExactLike(u)) {
+            return false;
+        }
+        notifyLeaderboards();
+        return true;
+    }
+
+    public int addLikesFrom(Collection<User> users) {
+        if (this.approximateLikes != null
+                || (long) this.likers.size() + users.size() > approximateLikeThreshold) {
+            // Like par like, afin que l'ensemble exact ne dépasse pas le seuil de
+            // tout un lot
+            return Post.super.addLikesFrom(users);
+        }
+        int[] ids = new int[users.size()];
+        int n = 0;
+        for (User u : users) {
+            if (u == null) {
+                throw new NullPointerException();
+            }
+            if (n == ids.length) {
+                ids = Arrays.copyOf(ids, n * 2 + 1);
+            }
+            ids[n] = u.getId();
+            n++;
+        }
+        // Un seul verrou par sous-ensemble de likers pour tout le lot; les
+        // identifiants nouveaux sont ensuite en tête du tableau
+        int added = this.likers.addIds(ids, n);
+        int recorded = 0;
+        for (int i = 0; i < added; i++) {
+            if (recordExactLike(User.getUser(ids[i]))) {
+                recorded++;
+            }
+        }
+        if (recorded > 0) {
+            notifyLeaderboards();
+        }
+        return recorded;
+    }
+
+    // Termine l'ajout d'un like nouveau dans l'ensemble exact: passe en mode
+    // approché si le seuil est dépassé, et indexe le like parmi les Post likés
+    // de u. Un ajout en concurrence avec le passage en mode approché peut l'être
+    // aussi avec un like de u accepté en mode approché: l'index de u départage
+    // alors les deux, et false est renvoyé si l'autre l'a emporté.
+    private boolean recordExactLike(User u) {
+        ApproximateLikes approx = this.approximateLikes;
+        if (approx == null) {
+            if (this.likers.size() <= approximateLikeThreshold) {
+                u.recordLike(this);
+                return true;
+            }
+            switchToApproximateLikes();
+            approx = this.approximateLikes;
+        }
+        approx.add(u.getId());
+        return u.recordLikeIfAbsent(this);
+    }
+
+    // Mémorise l'User publiant ce Post (voir User.addPost(Post)); seul le
+    // premier est retenu.
+    void setOwner(User u) {
+        if (this.owner == null) {
+            this.owner = u;
+        }
+    }
+
+    // Signale le nouveau nombre de likes au classement global et à celui de
+    // l'auteur de ce Post, s'ils sont activés.
+    private void notifyLeaderboards() {
+        Leaderboard board = Leaderboard.getGlobal();
+        if (board != null) {
+            board.update(this);
+        }
+        User author = this.owner;
+        if (author != null) {
+            board = author.getLeaderboard();
+            if (board != null) {
+                board.update(this);
+            }
+        }
+    }
+
+    // Passe en mode approché: les likers exacts sont recopiés dans le sketch
+    // après la publication de celui-ci, afin d'y inclure les likes ajoutés
+    // simultanément à l'ensemble exact, qui ne reçoit plus ensuite que les
+    // likes déjà engagés dans ces ajouts.
+    private synchronized void switchToApproximateLikes() {
+        if (this.approximateLikes != null) {
+            return;
+        }
+        ApproximateLikes approx = new ApproximateLikes();
+        this.approximateLikes = approx;
+        for (User liker : this.likers) {
+            approx.add(liker.getId());
+        }
     }
 
     public Set<User> getLikers() {
-        return Collections.unmodifiableSet(this.likedUsers);
+        return Collections.unmodifiableSet(this.likers);
     }
 
     public ListIterator<User> iterator() {
-        return Collections.unmodifiableList(new ArrayList<User>(this.likedUsers)).listIterator();
+        return this.likers.listIterator();
     }
 
     public int compareTo(Post p) {
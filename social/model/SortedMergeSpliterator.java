@@ -0,0 +1,196 @@
+package social.model;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+
+/**
+ * Un Spliterator fusionnant plusieurs listes à accès direct triées selon un même
+ * Comparator, sans copie de leurs éléments.
+ *
+ * Chaque source est représentée par un intervalle d'index de sa liste. La
+ * découpe (trySplit()) choisit comme pivot l'élément médian de la plus grande
+ * source, puis coupe chaque source par recherche dichotomique en deux
+ * intervalles: les éléments inférieurs ou égaux au pivot, confiés au
+ * Spliterator renvoyé, et les éléments supérieurs, conservés. Pour des Post
+ * triés par date, chaque découpe sépare donc deux plages de dates, en
+ * O(k.log(n)) pour k sources de n éléments.
+ *
+ * En cas d'égalité entre deux éléments, celui de la source de plus petit index
+ * est énuméré en premier, comme dans FusionSortedIterator.
+ */
+final class SortedMergeSpliterator<E> implements Spliterator<E> {
+	private static final int CHARACTERISTICS = ORDERED | SORTED | NONNULL | SIZED | SUBSIZED | IMMUTABLE;
+
+	private final List<? extends List<? extends E>> sources;
+	private final Comparator<? super E> comparator;
+	private int[] positions;
+	private final int[] ends;
+	private long remaining;
+	// Créée au premier appel à tryAdvance, et recréée après une découpe
+	private SourceQueue heads;
+
+	/**
+	 * Initialise un Spliterator fusionnant tous les éléments des listes
+	 * spécifiées.
+	 *
+	 * @param sources    les listes fusionnées, à accès direct et triées selon
+	 *                   comparator
+	 * @param comparator l'ordre des éléments
+	 *
+	 * @requires sources != null && !sources.contains(null);
+	 * @requires comparator != null;
+	 */
+	SortedMergeSpliterator(List<? extends List<? extends E>> sources, Comparator<? super E> comparator) {
+		this(sources, comparator, new int[sources.size()], endsOf(sources));
+	}
+
+	private SortedMergeSpliterator(List<? extends List<? extends E>> sources, Comparator<? super E> comparator,
+			int[] positions, int[] ends) {
+		this.sources = sources;
+		this.comparator = comparator;
+		this.positions = positions;
+		this.ends = ends;
+		for (int i = 0; i < positions.length; i++) {
+			remaining += ends[i] - positions[i];
+		}
+	}
+
+	private static int[] endsOf(List<? extends List<?>> sources) {
+		int[] ends = new int[sources.size()];
+		for (int i = 0; i < ends.length; i++) {
+			ends[i] = sources.get(i).size();
+		}
+		return ends;
+	}
+
+	/**
+	 * Renvoie une vue à accès direct des éléments restant à énumérer par
+	 * l'itérateur spécifié, ou null si cet itérateur n'est pas adossé à une liste
+	 * (seuls les User et les TimelineCursor le sont).
+	 *
+	 * @param iter un itérateur
+	 *
+	 * @return les éléments restant à énumérer par iter, ou null
+	 */
+	@SuppressWarnings("unchecked")
+	static <E> List<? extends E> remainingOf(ExtendedListIterator<? extends E> iter) {
+		if (iter instanceof TimelineCursor) {
+			return (List<? extends E>) ((TimelineCursor) iter).remaining();
+		}
+		if (iter instanceof User) {
+			return (List<? extends E>) ((User) iter).remaining();
+		}
+		return null;
+	}
+
+	private E head(int i) {
+		return sources.get(i).get(positions[i]);
+	}
+
+	@Override
+	public boolean tryAdvance(Consumer<? super E> action) {
+		if (heads == null) {
+			int k = positions.length;
+			heads = new SourceHeap(k, (i, j) -> {
+				int cmp = comparator.compare(head(i), head(j));
+				return cmp != 0 ? cmp : Integer.compare(i, j);
+			});
+			for (int i = 0; i < k; i++) {
+				heads.update(i, positions[i] < ends[i]);
+			}
+		}
+		if (heads.isEmpty()) {
+			return false;
+		}
+		int i = heads.peek();
+		E e = head(i);
+		positions[i]++;
+		remaining--;
+		heads.update(i, positions[i] < ends[i]);
+		action.accept(e);
+		return true;
+	}
+
+	@Override
+	public Spliterator<E> trySplit() {
+		if (remaining < 2) {
+			return null;
+		}
+		int largest = 0;
+		for (int i = 1; i < positions.length; i++) {
+			if (ends[i] - positions[i] > ends[largest] - positions[largest]) {
+				largest = i;
+			}
+		}
+		E pivot = sources.get(largest).get((positions[largest] + ends[largest] - 1) >>> 1);
+		int[] splits = new int[positions.length];
+		long prefixSize = 0;
+		for (int i = 0; i < positions.length; i++) {
+			splits[i] = firstAfter(i, pivot);
+			prefixSize += splits[i] - positions[i];
+		}
+		if (prefixSize == 0 || prefixSize == remaining) {
+			return null;
+		}
+		Spliterator<E> prefix = new SortedMergeSpliterator<E>(sources, comparator, positions, splits.clone());
+		positions = splits;
+		remaining -= prefixSize;
+		heads = null;
+		return prefix;
+	}
+
+	/**
+	 * Renvoie l'index du premier élément de la source spécifiée strictement
+	 * supérieur au pivot, par recherche dichotomique.
+	 */
+	private int firstAfter(int i, E pivot) {
+		List<? extends E> source = sources.get(i);
+		int low = positions[i];
+		int high = ends[i];
+		while (low < high) {
+			int mid = (low + high) >>> 1;
+			if (comparator.compare(source.get(mid), pivot) <= 0) {
+				low = mid + 1;
+			} else {
+				high = mid;
+			}
+		}
+		return low;
+	}
+
+	@Override
+	public long estimateSize() {
+		return remaining;
+	}
+
+	@Override
+	public int characteristics() {
+		return CHARACTERISTICS;
+	}
+
+	/**
+	 * Renvoie l'ordre des éléments, ou null s'il s'agit de leur ordre naturel,
+	 * comme l'exige le contrat de Spliterator pour une source SORTED.
+	 */
+	@Override
+	public Comparator<? super E> getComparator() {
+		return comparator == Comparator.naturalOrder() ? null : comparator;
+	}
+
+	/**
+	 * Renvoie un Spliterator sur les éléments de la liste spécifiée.
+	 *
+	 * @param source     une liste à accès direct triée selon comparator
+	 * @param comparator l'ordre des éléments
+	 *
+	 * @return un Spliterator sur les éléments de source
+	 */
+	static <E> SortedMergeSpliterator<E> of(List<? extends E> source, Comparator<? super E> comparator) {
+		List<List<? extends E>> sources = new ArrayList<List<? extends E>>(1);
+		sources.add(source);
+		return new SortedMergeSpliterator<E>(sources, comparator);
+	}
+}
@@ -0,0 +1,128 @@
+package social.model;
+
+import java.util.NoSuchElementException;
+import java.util.function.IntBinaryOperator;
+
+/**
+ * Une SourceQueue implémentée par un tas binaire indexé contenant des index de
+ * sources (entiers de 0 à capacity - 1), ordonnés selon un ordre spécifié à la
+ * création. Le plus petit index selon cet ordre est en tête du tas.
+ *
+ * Contrairement à une PriorityQueue, la position de chaque index dans le tas
+ * est mémorisée, ce qui permet de retirer ou de replacer un index quelconque
+ * en O(log n) lorsque sa clé a changé.
+ *
+ * @invariant size() >= 0 && size() <= capacity;
+ * @invariant isEmpty() <==> size() == 0;
+ */
+final class SourceHeap implements SourceQueue {
+	private final IntBinaryOperator order;
+	private final int[] heap;
+	private final int[] position;
+	private int size;
+
+	/**
+	 * Initialise un tas vide pouvant contenir les index de 0 à capacity - 1.
+	 *
+	 * @param capacity nombre d'index pouvant être contenus dans ce tas
+	 * @param order    ordre des index, renvoyant une valeur négative, nulle ou
+	 *                 positive selon que le premier index est plus petit, égal ou
+	 *                 plus grand que le second
+	 *
+	 * @requires capacity >= 0;
+	 * @requires order != null;
+	 * @ensures isEmpty();
+	 */
+	SourceHeap(int capacity, IntBinaryOperator order) {
+		this.order = order;
+		this.heap = new int[capacity];
+		this.position = new int[capacity];
+		clear();
+	}
+
+	@Override
+	public void clear() {
+		for (int i = 0; i < position.length; i++) {
+			position[i] = -1;
+		}
+		size = 0;
+	}
+
+	@Override
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	@Override
+	public int size() {
+		return size;
+	}
+
+	@Override
+	public boolean contains(int source) {
+		return position[source] >= 0;
+	}
+
+	@Override
+	public int peek() {
+		if (size == 0) {
+			throw new NoSuchElementException();
+		}
+		return heap[0];
+	}
+
+	@Override
+	public void update(int source, boolean present) {
+		int pos = position[source];
+		if (present) {
+			if (pos < 0) {
+				pos = size++;
+				place(source, pos);
+			}
+			siftDown(siftUp(pos));
+		} else if (pos >= 0) {
+			size--;
+			position[source] = -1;
+			if (pos < size) {
+				place(heap[size], pos);
+				siftDown(siftUp(pos));
+			}
+		}
+	}
+
+	private void place(int source, int pos) {
+		heap[pos] = source;
+		position[source] = pos;
+	}
+
+	private int siftUp(int pos) {
+		int source = heap[pos];
+		while (pos > 0) {
+			int parent = (pos - 1) >>> 1;
+			if (order.applyAsInt(source, heap[parent]) >= 0) {
+				break;
+			}
+			place(heap[parent], pos);
+			pos = parent;
+		}
+		place(source, pos);
+		return pos;
+	}
+
+	private void siftDown(int pos) {
+		int source = heap[pos];
+		int half = size >>> 1;
+		while (pos < half) {
+			int child = 2 * pos + 1;
+			if (child + 1 < size && order.applyAsInt(heap[child + 1], heap[child]) < 0) {
+				child++;
+			}
+			if (order.applyAsInt(source, heap[child]) <= 0) {
+				break;
+			}
+			place(heap[child], pos);
+			pos = child;
+		}
+		place(source, pos);
+	}
+}
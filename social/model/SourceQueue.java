@@ -0,0 +1,76 @@
+package social.model;
+
+import java.util.NoSuchElementException;
+
+/**
+ * Une file de priorité d'index de sources (entiers de 0 à capacity - 1) dans
+ * laquelle la place de n'importe quel index peut être mise à jour après une
+ * modification de sa clé. Utilisée par FusionSortedIterator pour déterminer la
+ * source fournissant l'élément suivant (ou précédent) de la fusion.
+ *
+ * @invariant size() >= 0;
+ * @invariant isEmpty() <==> size() == 0;
+ */
+interface SourceQueue {
+
+	/**
+	 * Vide cette file.
+	 *
+	 * @ensures isEmpty();
+	 */
+	void clear();
+
+	/**
+	 * Renvoie true si cette file est vide.
+	 *
+	 * @return true si cette file est vide; false sinon
+	 *
+	 * @pure
+	 */
+	boolean isEmpty();
+
+	/**
+	 * Renvoie le nombre d'index contenus dans cette file.
+	 *
+	 * @return le nombre d'index contenus dans cette file
+	 *
+	 * @pure
+	 */
+	int size();
+
+	/**
+	 * Renvoie true si l'index spécifié est contenu dans cette file.
+	 *
+	 * @param source l'index cherché
+	 *
+	 * @return true si l'index spécifié est contenu dans cette file; false sinon
+	 *
+	 * @pure
+	 */
+	boolean contains(int source);
+
+	/**
+	 * Renvoie le plus petit index de cette file selon son ordre.
+	 *
+	 * @return le plus petit index de cette file
+	 *
+	 * @throws NoSuchElementException si cette file est vide
+	 *
+	 * @requires !isEmpty();
+	 *
+	 * @pure
+	 */
+	int peek();
+
+	/**
+	 * Met à jour la place de l'index spécifié dans cette file après une
+	 * modification de sa clé: l'index est ajouté ou replacé si present est true,
+	 * retiré sinon.
+	 *
+	 * @param source  l'index à mettre à jour
+	 * @param present true si l'index doit figurer dans cette file
+	 *
+	 * @ensures contains(source) <==> present;
+	 */
+	void update(int source, boolean present);
+}
@@ -0,0 +1,109 @@
+package social.model;
+
+import java.util.NoSuchElementException;
+import java.util.function.IntBinaryOperator;
+
+/**
+ * Une SourceQueue implémentée par un arbre de tournoi (arbre des vainqueurs)
+ * dont les feuilles sont les index de sources (entiers de 0 à capacity - 1).
+ * Chaque noeud interne mémorise le vainqueur (le plus petit index selon l'ordre
+ * spécifié à la création) de ses deux sous-arbres, la racine contenant donc le
+ * plus petit index de la file.
+ *
+ * La mise à jour d'un index rejoue uniquement les matchs situés sur le chemin
+ * de sa feuille à la racine: elle coûte au plus log2(capacity) comparaisons et
+ * aucun échange, contre jusqu'à 2.log2(n) comparaisons pour un tas binaire.
+ * Contrairement à un arbre des perdants, n'importe quelle feuille peut être
+ * mise à jour, ce qui permet à FusionSortedIterator de replacer dans la file
+ * des éléments précédents la source qui vient de fournir l'élément suivant (et
+ * inversement).
+ *
+ * @invariant size() >= 0 && size() <= capacity;
+ * @invariant isEmpty() <==> size() == 0;
+ */
+final class SourceTournament implements SourceQueue {
+	private static final int NONE = -1;
+
+	private final IntBinaryOperator order;
+	private final int leafNb;
+	private final int[] winners;
+	private int size;
+
+	/**
+	 * Initialise un arbre de tournoi vide pouvant contenir les index de 0 à
+	 * capacity - 1.
+	 *
+	 * @param capacity nombre d'index pouvant être contenus dans cet arbre
+	 * @param order    ordre des index, renvoyant une valeur négative, nulle ou
+	 *                 positive selon que le premier index est plus petit, égal ou
+	 *                 plus grand que le second
+	 *
+	 * @requires capacity >= 0;
+	 * @requires order != null;
+	 * @ensures isEmpty();
+	 */
+	SourceTournament(int capacity, IntBinaryOperator order) {
+		this.order = order;
+		int n = 1;
+		while (n < capacity) {
+			n *= 2;
+		}
+		this.leafNb = n;
+		// winners[1] est la racine, les feuilles occupent winners[leafNb..2*leafNb-1]
+		this.winners = new int[2 * n];
+		clear();
+	}
+
+	@Override
+	public void clear() {
+		for (int i = 0; i < winners.length; i++) {
+			winners[i] = NONE;
+		}
+		size = 0;
+	}
+
+	@Override
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	@Override
+	public int size() {
+		return size;
+	}
+
+	@Override
+	public boolean contains(int source) {
+		return winners[leafNb + source] != NONE;
+	}
+
+	@Override
+	public int peek() {
+		if (size == 0) {
+			throw new NoSuchElementException();
+		}
+		return winners[1];
+	}
+
+	@Override
+	public void update(int source, boolean present) {
+		int node = leafNb + source;
+		if (present != contains(source)) {
+			size += present ? 1 : -1;
+		}
+		winners[node] = present ? source : NONE;
+		for (node >>>= 1; node > 0; node >>>= 1) {
+			winners[node] = match(winners[2 * node], winners[2 * node + 1]);
+		}
+	}
+
+	private int match(int left, int right) {
+		if (left == NONE) {
+			return right;
+		}
+		if (right == NONE) {
+			return left;
+		}
+		return order.applyAsInt(left, right) <= 0 ? left : right;
+	}
+}
@@ -0,0 +1,232 @@
+package social.model;
+
+import java.time.Instant;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * La liste des Post d'un User, triée du plus récent au plus ancien.
+ *
+ * Les Post sont mémorisés dans un tableau par ordre chronologique (le plus
+ * ancien à l'index 0 du tableau), de sorte que l'ajout d'un nouveau Post en
+ * tête de liste se fait en temps constant (amorti) et que l'accès au ième plus
+ * récent Post se fait en temps constant.
+ *
+ * Cette liste ne peut être modifiée que par addFirst(Post), les autres
+ * opérations de modification lèvent une UnsupportedOperationException.
+ *
+ * Le tableau n'étant jamais modifié qu'au-delà de ses size() premières cases
+ * (ou remplacé par une copie plus grande), un instantané de cette Timeline
+ * peut être obtenu en temps constant et sans copie en mémorisant le tableau
+ * et la taille courants (voir snapshot()).
+ *
+ * Le tableau et la taille sont volatile et addFirst(Post) ne publie la
+ * nouvelle taille qu'après avoir rempli la case correspondante: un instantané
+ * peut donc être obtenu et parcouru depuis un autre thread pendant que le
+ * propriétaire de la Timeline y ajoute des Post.
+ *
+ * @invariant (\forall int i; i >= 0 && i < size(); get(i) != null);
+ */
+final class Timeline extends AbstractList<Post> implements RandomAccess {
+	private static final int DEFAULT_CAPACITY = 8;
+
+	private volatile Post[] elements;
+	private volatile int size;
+
+	/**
+	 * Initialise une Timeline vide.
+	 *
+	 * @ensures isEmpty();
+	 */
+	Timeline() {
+		this.elements = new Post[DEFAULT_CAPACITY];
+		this.size = 0;
+	}
+
+	/**
+	 * Renvoie le ième plus récent Post de cette Timeline.
+	 *
+	 * @param i index du Post cherché
+	 *
+	 * @return le ième plus récent Post de cette Timeline
+	 *
+	 * @throws IndexOutOfBoundsException si i < 0 ou i >= size()
+	 *
+	 * @pure
+	 */
+	@Override
+	public Post get(int i) {
+		int n = size;
+		if (i < 0 || i >= n) {
+			throw new IndexOutOfBoundsException();
+		}
+		return elements[n - 1 - i];
+	}
+
+	/**
+	 * Renvoie le nombre de Post de cette Timeline.
+	 *
+	 * @return le nombre de Post de cette Timeline
+	 *
+	 * @pure
+	 */
+	@Override
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Ajoute le Post spécifié en tête de cette Timeline (index 0).
+	 *
+	 * Cette méthode implémente List.addFirst(E) (Java 21), publique: Timeline
+	 * n'étant visible que de son paquetage et les User n'en exposant que des vues
+	 * non modifiables, seul User.addPost(Post) l'appelle.
+	 *
+	 * @param p le Post à ajouter
+	 *
+	 * @requires p != null;
+	 * @ensures get(0) == p;
+	 * @ensures size() == \old(size()) + 1;
+	 */
+	public void addFirst(Post p) {
+		int n = size;
+		Post[] array = elements;
+		if (n == array.length) {
+			array = Arrays.copyOf(array, n * 2);
+			elements = array;
+		}
+		array[n] = p;
+		size = n + 1;
+	}
+
+	/**
+	 * Renvoie l'index du plus récent Post de la liste spécifiée (une Timeline ou
+	 * un de ses instantanés, triés du plus récent au plus ancien) strictement
+	 * antérieur à la date spécifiée, ou posts.size() si aucun Post n'est
+	 * antérieur à cette date. Les Post étant triés par date, cet index est obtenu
+	 * par recherche dichotomique en O(log posts.size()).
+	 *
+	 * Appliquée à un instantané (voir snapshot()), cette recherche et les accès
+	 * ultérieurs par index portent sur les mêmes Post, même si le propriétaire de
+	 * la Timeline y ajoute des Post entre-temps.
+	 *
+	 * @param posts les Post, du plus récent au plus ancien
+	 * @param date  la date limite
+	 *
+	 * @return l'index du plus récent Post antérieur à la date spécifiée ou
+	 *         posts.size()
+	 *
+	 * @requires posts != null && posts instanceof RandomAccess;
+	 * @requires date != null;
+	 * @ensures \result >= 0 && \result <= posts.size();
+	 * @ensures (\forall int i; i >= 0 && i < \result; !posts.get(i).getDate().isBefore(date));
+	 * @ensures (\forall int i; i >= \result && i < posts.size();
+	 *          posts.get(i).getDate().isBefore(date));
+	 *
+	 * @pure
+	 */
+	static int indexBefore(List<Post> posts, Instant date) {
+		int low = 0;
+		int high = posts.size();
+		while (low < high) {
+			int mid = (low + high) >>> 1;
+			if (posts.get(mid).getDate().isBefore(date)) {
+				high = mid;
+			} else {
+				low = mid + 1;
+			}
+		}
+		return low;
+	}
+
+	/**
+	 * Renvoie le nombre de Post des n premières cases du tableau chronologique
+	 * spécifié strictement antérieurs à la date spécifiée, par recherche
+	 * dichotomique.
+	 */
+	private static int countBefore(Post[] array, int n, Instant date) {
+		int low = 0;
+		int high = n;
+		while (low < high) {
+			int mid = (low + high) >>> 1;
+			if (array[mid].getDate().isBefore(date)) {
+				low = mid + 1;
+			} else {
+				high = mid;
+			}
+		}
+		return low;
+	}
+
+	/**
+	 * Renvoie une vue non modifiable de cette Timeline telle qu'elle est au
+	 * moment de l'appel. La vue est obtenue en temps constant et sans copie, et
+	 * n'est pas affectée par les appels ultérieurs à addFirst(Post).
+	 *
+	 * @return un instantané non modifiable de cette Timeline
+	 *
+	 * @ensures \result.equals(this);
+	 * @ensures \result.size() == size();
+	 *
+	 * @pure
+	 */
+	List<Post> snapshot() {
+		// La taille doit être lue avant le tableau (voir addFirst(Post))
+		int n = size;
+		return new Snapshot(elements, 0, n);
+	}
+
+	/**
+	 * Renvoie une vue non modifiable des Post de cette Timeline dont la date est
+	 * comprise entre from (inclus) et to (exclu), du plus récent au plus ancien,
+	 * tels qu'ils sont au moment de l'appel. Les bornes de la vue sont obtenues
+	 * par recherche dichotomique en O(log size()), sans copie.
+	 *
+	 * @param from date de début de la fenêtre (incluse)
+	 * @param to   date de fin de la fenêtre (exclue)
+	 *
+	 * @return un instantané non modifiable des Post de la fenêtre
+	 *
+	 * @requires from != null && to != null;
+	 * @requires !from.isAfter(to);
+	 * @ensures (\forall Post p; \result.contains(p); contains(p) &&
+	 *          !p.getDate().isBefore(from) && p.getDate().isBefore(to));
+	 *
+	 * @pure
+	 */
+	List<Post> window(Instant from, Instant to) {
+		int n = size;
+		Post[] array = elements;
+		return new Snapshot(array, countBefore(array, n, from), countBefore(array, n, to));
+	}
+
+	/**
+	 * Un instantané d'une Timeline: les cases d'index low (inclus) à high (exclu)
+	 * d'un tableau de Post, énumérées de la dernière à la première.
+	 */
+	private static final class Snapshot extends AbstractList<Post> implements RandomAccess {
+		private final Post[] elements;
+		private final int low, high;
+
+		Snapshot(Post[] elements, int low, int high) {
+			this.elements = elements;
+			this.low = low;
+			this.high = high;
+		}
+
+		@Override
+		public Post get(int i) {
+			if (i < 0 || i >= high - low) {
+				throw new IndexOutOfBoundsException();
+			}
+			return elements[high - 1 - i];
+		}
+
+		@Override
+		public int size() {
+			return high - low;
+		}
+	}
+}
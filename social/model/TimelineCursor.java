@@ -0,0 +1,166 @@
+package social.model;
+
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * Un itérateur bidirectionnel indépendant sur les Post d'un User, du plus récent
+ * au plus ancien, tels qu'ils étaient au moment de la création de l'itérateur.
+ *
+ * Contrairement aux itérateurs natifs des User, chaque TimelineCursor possède
+ * son propre état d'itération: plusieurs TimelineCursor sur les Post d'un même
+ * User peuvent être utilisés simultanément, y compris depuis des threads
+ * différents, sans interférer entre eux ni avec l'itérateur natif de ce User.
+ * Les Post publiés après la création d'un TimelineCursor ne sont pas énumérés.
+ *
+ * @invariant nextIndex() == previousIndex() + 1;
+ * @invariant lastIndex() == -1 || lastIndex() == nextIndex() || lastIndex() ==
+ *            previousIndex();
+ */
+public final class TimelineCursor implements ExtendedListIterator<Post> {
+	private final User user;
+	private final List<Post> posts;
+	private int nextIndex, lastIndex;
+
+	/**
+	 * Initialise un TimelineCursor sur les Post spécifiés de l'User spécifié.
+	 *
+	 * @param user  l'User dont les Post sont énumérés
+	 * @param posts un instantané des Post de cet User, du plus récent au plus
+	 *              ancien
+	 *
+	 * @requires user != null && posts != null;
+	 * @ensures nextIndex() == 0 && lastIndex() == -1;
+	 */
+	TimelineCursor(User user, List<Post> posts) {
+		this.user = user;
+		this.posts = posts;
+		startIteration();
+	}
+
+	/**
+	 * Renvoie l'User dont les Post sont énumérés par ce TimelineCursor.
+	 *
+	 * @return l'User dont les Post sont énumérés
+	 *
+	 * @pure
+	 */
+	public User getUser() {
+		return user;
+	}
+
+	/**
+	 * Renvoie le nombre de Post énumérés par ce TimelineCursor.
+	 *
+	 * @return le nombre de Post énumérés par ce TimelineCursor
+	 *
+	 * @pure
+	 */
+	public int size() {
+		return posts.size();
+	}
+
+	/**
+	 * Renvoie une vue des Post restant à énumérer par next().
+	 */
+	List<Post> remaining() {
+		return posts.subList(nextIndex, posts.size());
+	}
+
+	@Override
+	public void startIteration() {
+		nextIndex = 0;
+		lastIndex = -1;
+	}
+
+	@Override
+	public boolean hasNext() {
+		return nextIndex < posts.size();
+	}
+
+	@Override
+	public Post next() {
+		if (!hasNext()) {
+			throw new NoSuchElementException();
+		}
+		lastIndex = nextIndex;
+		nextIndex++;
+		return posts.get(lastIndex);
+	}
+
+	@Override
+	public Post getNext() {
+		if (!hasNext()) {
+			throw new NoSuchElementException();
+		}
+		return posts.get(nextIndex);
+	}
+
+	@Override
+	public boolean hasPrevious() {
+		return nextIndex > 0;
+	}
+
+	@Override
+	public Post previous() {
+		if (!hasPrevious()) {
+			throw new NoSuchElementException();
+		}
+		nextIndex--;
+		lastIndex = nextIndex;
+		return posts.get(nextIndex);
+	}
+
+	@Override
+	public Post getPrevious() {
+		if (!hasPrevious()) {
+			throw new NoSuchElementException();
+		}
+		return posts.get(nextIndex - 1);
+	}
+
+	@Override
+	public int nextIndex() {
+		return nextIndex;
+	}
+
+	@Override
+	public int previousIndex() {
+		return nextIndex - 1;
+	}
+
+	@Override
+	public int lastIndex() {
+		return lastIndex;
+	}
+
+	/**
+	 * Opération non supportée.
+	 *
+	 * @throws UnsupportedOperationException toujours
+	 */
+	@Override
+	public void remove() {
+		throw new UnsupportedOperationException("Opération non supportée");
+	}
+
+	/**
+	 * Opération non supportée.
+	 *
+	 * @throws UnsupportedOperationException toujours
+	 */
+	@Override
+	public void set(Post e) {
+		throw new UnsupportedOperationException("Opération non supportée");
+	}
+
+	/**
+	 * Opération non supportée.
+	 *
+	 * @throws UnsupportedOperationException toujours
+	 */
+	@Override
+	public void add(Post e) {
+		throw new UnsupportedOperationException("Opération non supportée");
+	}
+}
@@ -4,14 +4,27 @@
 package social.model;
 
 import java.time.Instant;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashSet;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.ListIterator;
 import java.util.NoSuchElementException;
+import java.util.Queue;
 import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
  * Un utilisateur du réseau social Microdon. Chaque instance possède un nom
@@ -76,12 +89,76 @@ import java.util.Set;
 public class User implements Iterable<Post>, ExtendedListIterator<Post> {
 
 	private String name, password;
+	private final int id;
 	private Instant creationDate;
 	private Set<User> followers, subs;
-	private List<Post> posts;
+	private Timeline posts;
 	private int nextIndex, previousIndex, lastIndex;
+	private volatile Inbox inbox;
+	private volatile FeedCache feedCache;
+	private volatile LiveFeed liveFeed;
+	// Followers dont le LiveFeed est ouvert, parcourus même pour une célébrité
+	private final Set<User> liveFollowers;
+	// Followers en mode "push", seuls parcourus lors d'une publication
+	private final Set<User> pushFollowers;
+	// Followers ayant mis en cache la première page de leur NewsFeed depuis le
+	// dernier Post de cet utilisateur, parcourus et retirés à chaque publication
+	private final Set<User> cachedFollowers;
+	// Index des Post likés, créé au premier like
+	private volatile LikedPostIndex likedPosts;
+	private volatile Leaderboard leaderboard;
+	// Version des abonnements, incrémentée à chaque (dés)abonnement, et version
+	// du NewsFeed, incrémentée à chaque Post de cet utilisateur ou d'un abonnement
+	// dont il a mis en cache la première page
+	private final AtomicInteger subsVersion, feedVersion;
 
-	private static Set<User> allUsers = new HashSet<User>();
+	/**
+	 * Nombre maximal de pages mémorisées par le cache du NewsFeed de chaque User.
+	 */
+	private static final int FEED_CACHE_CAPACITY = 16;
+
+	/**
+	 * Ordre des TimelineCursor fusionnés par newsFeed() et newsFeed(Instant,
+	 * Instant): par identifiant croissant de leur User, de sorte que les Post de
+	 * même date sont énumérés comme dans newsFeed(int, FeedCursor). null y est
+	 * admis pour que FusionSortedIterator puisse vérifier !contains(null).
+	 */
+	private static final Comparator<TimelineCursor> CURSOR_ORDER = Comparator
+			.nullsFirst(Comparator.comparingInt((TimelineCursor c) -> c.getUser().getId()));
+
+	/**
+	 * Index des instances créées, associant chaque nom à l'unique User qui le
+	 * porte. L'index est concurrent afin que des inscriptions simultanées
+	 * depuis plusieurs threads ne puissent ni le corrompre ni enregistrer deux
+	 * User de même nom.
+	 */
+	private static ConcurrentMap<String, User> allUsers = new ConcurrentHashMap<String, User>();
+
+	/**
+	 * Index des instances créées par identifiant, découpé en blocs de tailles
+	 * croissantes: le bloc b contient les identifiants de ID_BLOCK_BASE * (2^b -
+	 * 1) à ID_BLOCK_BASE * (2^(b+1) - 1) exclu. Les blocs sont créés à la demande
+	 * par compareAndSet et ne sont jamais recopiés, de sorte que l'index croît
+	 * sans verrou. Un User n'y est publié qu'à la fin de son constructeur.
+	 */
+	private static final AtomicReferenceArray<AtomicReferenceArray<User>> usersById = new AtomicReferenceArray<AtomicReferenceArray<User>>(
+			32);
+	private static final int ID_BLOCK_BASE = 64;
+	private static final int ID_BLOCK_SHIFT = Integer.numberOfTrailingZeros(ID_BLOCK_BASE);
+
+	/**
+	 * Prochain identifiant jamais attribué, et identifiants libérés par les
+	 * inscriptions ayant échoué, réattribués en priorité afin que les
+	 * identifiants restent denses.
+	 */
+	private static final AtomicInteger nextUserId = new AtomicInteger();
+	private static final Queue<Integer> freeUserIds = new ConcurrentLinkedQueue<Integer>();
+
+	/**
+	 * Nombre de followers au-delà duquel les Post d'un User ne sont plus recopiés
+	 * dans les NewsFeed matérialisés de ses followers (voir isCelebrity()).
+	 */
+	private static volatile int celebrityThreshold = Integer.MAX_VALUE;
 
 	/**
 	 * Renvoie une Collection non modifiable contenant toutes les instances créées
@@ -94,7 +171,7 @@ public class User implements Iterable<Post>, ExtendedListIterator<Post> {
 	 * @pure
 	 */
 	public static Collection<User> getAllUser() {
-		return Collections.unmodifiableCollection(allUsers);
+		return Collections.unmodifiableCollection(allUsers.values());
 	}
 
 	/**
@@ -115,12 +192,33 @@ public class User implements Iterable<Post>, ExtendedListIterator<Post> {
 	 * @pure
 	 */
 	public static User getUser(String userName) {
-		for (User u : allUsers) {
-			if (u.getName().equals(userName)) {
-				return u;
-			}
+		if (userName == null) {
+			return null;
+		}
+		return allUsers.get(userName);
+	}
+
+	/**
+	 * Renvoie l'instance de User possédant l'identifiant spécifié ou null si une
+	 * telle instance n'existe pas.
+	 * 
+	 * @param id l'identifiant de l'User cherché
+	 * 
+	 * @return L'instance possédant l'identifiant spécifié ou null si une telle
+	 *         instance n'existe pas.
+	 * 
+	 * @ensures (\result != null) ==> \result.getId() == id;
+	 * @ensures (\result != null) <==> getAllUser().contains(\result);
+	 * 
+	 * @pure
+	 */
+	public static User getUser(int id) {
+		if (id < 0) {
+			return null;
 		}
-		return null;
+		int b = idBlock(id);
+		AtomicReferenceArray<User> block = usersById.get(b);
+		return block == null ? null : block.get(id - idBlockStart(b));
 	}
 
 	/**
@@ -138,12 +236,7 @@ public class User implements Iterable<Post>, ExtendedListIterator<Post> {
 	 * @pure
 	 */
 	public static boolean hasUser(String userName) {
-		for (User u : allUsers) {
-			if (u.getName().equals(userName)) {
-				return true;
-			}
-		}
-		return false;
+		return userName != null && allUsers.containsKey(userName);
 	}
 
 	/**
@@ -180,6 +273,49 @@ public class User implements Iterable<Post>, ExtendedListIterator<Post> {
 		return pass != null && !pass.isBlank() && pass.length() > 0;
 	}
 
+	/**
+	 * Renvoie le nombre de followers au-delà duquel un User est considéré comme
+	 * une célébrité (voir isCelebrity()).
+	 * 
+	 * @return le seuil de followers des célébrités
+	 * 
+	 * @ensures \result >= 0;
+	 * 
+	 * @pure
+	 */
+	public static int getCelebrityThreshold() {
+		return celebrityThreshold;
+	}
+
+	/**
+	 * Modifie le nombre de followers au-delà duquel un User est considéré comme
+	 * une célébrité (voir isCelebrity()). Les Post des User qui cessent d'être des
+	 * célébrités sont recopiés dans les NewsFeed matérialisés de leurs followers.
+	 * Par défaut ce seuil vaut Integer.MAX_VALUE: aucun User n'est une célébrité.
+	 * 
+	 * @param threshold le nouveau seuil de followers des célébrités
+	 * 
+	 * @throws IllegalArgumentException si threshold < 0
+	 * 
+	 * @requires threshold >= 0;
+	 * @ensures getCelebrityThreshold() == threshold;
+	 */
+	public static void setCelebrityThreshold(int threshold) {
+		if (threshold < 0) {
+			throw new IllegalArgumentException();
+		}
+		int old = celebrityThreshold;
+		celebrityThreshold = threshold;
+		if (threshold > old) {
+			for (User u : allUsers.values()) {
+				int n = u.followers.size();
+				if (n > old && n <= threshold) {
+					u.refreshFollowerInboxes();
+				}
+			}
+		}
+	}
+
 	/**
 	 * Initialise une nouvelle instance ayant les nom et mot de passe spécifiés. Le
 	 * nom spécifié ne doit pas déjà être le nom d'une instance existante. La
@@ -187,6 +323,11 @@ public class User implements Iterable<Post>, ExtendedListIterator<Post> {
 	 * date d'inscription du nouvel utilisateur est la date au moment de l'exécution
 	 * de ce constructeur.
 	 * 
+	 * Ce constructeur peut être appelé simultanément depuis plusieurs threads:
+	 * l'enregistrement du nom est atomique, de sorte que parmi plusieurs créations
+	 * concurrentes portant le même nom une seule aboutit, les autres échouant avec
+	 * une IllegalArgumentException.
+	 * 
 	 * @param userName nom de la nouvelle instance de User
 	 * @param password mot de passe de la nouvelle instance de User
 	 * 
@@ -226,9 +367,69 @@ public class User implements Iterable<Post>, ExtendedListIterator<Post> {
 		this.creationDate = Instant.now();
 		this.followers = new HashSet<User>();
 		this.subs = new HashSet<User>();
-		this.posts = new LinkedList<Post>();
+		this.posts = new Timeline();
+		this.subsVersion = new AtomicInteger();
+		this.feedVersion = new AtomicInteger();
+		this.liveFollowers = ConcurrentHashMap.newKeySet();
+		this.pushFollowers = ConcurrentHashMap.newKeySet();
+		this.cachedFollowers = ConcurrentHashMap.newKeySet();
 		startIteration();
-		allUsers.add(this);
+		Integer freeId = freeUserIds.poll();
+		this.id = freeId != null ? freeId : nextUserId.getAndIncrement();
+		if (allUsers.putIfAbsent(userName, this) != null) {
+			// Inscription concurrente du même nom: l'identifiant sera réattribué
+			freeUserIds.add(this.id);
+			throw new IllegalArgumentException();
+		}
+		publishId(this);
+	}
+
+	/**
+	 * Enregistre l'User spécifié, entièrement construit, dans l'index des
+	 * identifiants, en créant au besoin le bloc de son identifiant.
+	 */
+	private static void publishId(User u) {
+		int b = idBlock(u.id);
+		AtomicReferenceArray<User> block = usersById.get(b);
+		if (block == null) {
+			// Le dernier bloc s'arrête à Integer.MAX_VALUE
+			int length = (int) Math.min((long) ID_BLOCK_BASE << b, Integer.MAX_VALUE - idBlockStart(b) + 1L);
+			usersById.compareAndSet(b, null, new AtomicReferenceArray<User>(length));
+			block = usersById.get(b);
+		}
+		block.set(u.id - idBlockStart(b), u);
+	}
+
+	/**
+	 * Renvoie l'index du bloc de l'index des identifiants contenant id.
+	 */
+	private static int idBlock(int id) {
+		return 31 - Integer.numberOfLeadingZeros((id >>> ID_BLOCK_SHIFT) + 1);
+	}
+
+	/**
+	 * Renvoie le premier identifiant du bloc d'index b.
+	 */
+	private static int idBlockStart(int b) {
+		return ID_BLOCK_BASE * ((1 << b) - 1);
+	}
+
+	/**
+	 * Renvoie l'identifiant de cet utilisateur. Les identifiants sont attribués
+	 * par ordre d'inscription à partir de 0, l'identifiant d'une inscription
+	 * ayant échoué étant réattribué à la suivante, de sorte que l'ensemble des
+	 * identifiants des User inscrits est dense: ils permettent de représenter un
+	 * ensemble d'User par un ensemble d'entiers compact (voir UserBitmap).
+	 * 
+	 * @return l'identifiant de cet utilisateur
+	 * 
+	 * @ensures \result >= 0;
+	 * @ensures User.getUser(\result) == this;
+	 * 
+	 * @pure
+	 */
+	public int getId() {
+		return this.id;
 	}
 
 	/**
@@ -332,7 +533,22 @@ public class User implements Iterable<Post>, ExtendedListIterator<Post> {
 		if (u.equals(this)) {
 			throw new IllegalArgumentException();
 		}
-		return subs.add(u);
+		if (!subs.add(u)) {
+			return false;
+		}
+		u.followers.add(this);
+		subsVersion.incrementAndGet();
+		if (liveFeed != null) {
+			u.liveFollowers.add(this);
+		}
+		Inbox box = inbox;
+		if (box != null) {
+			u.pushFollowers.add(this);
+			if (!u.isCelebrity()) {
+				box.backfill(u);
+			}
+		}
+		return true;
 	}
 
 	/**
@@ -362,7 +578,30 @@ public class User implements Iterable<Post>, ExtendedListIterator<Post> {
 	 *          (u.getFollowers().equals(\old(u.getFollowers()));
 	 */
 	public boolean removeSubscriptionTo(User u) {
-		return subs.remove(u);
+		if (!subs.remove(u)) {
+			return false;
+		}
+		u.followers.remove(this);
+		u.liveFollowers.remove(this);
+		u.pushFollowers.remove(this);
+		u.cachedFollowers.remove(this);
+		subsVersion.incrementAndGet();
+		Inbox box = inbox;
+		if (box != null) {
+			List<User> authors = new ArrayList<User>(subs.size() + 1);
+			for (User s : subs) {
+				if (!s.isCelebrity()) {
+					authors.add(s);
+				}
+			}
+			authors.add(this);
+			box.removeAuthor(u, authors);
+		}
+		if (u.followers.size() == celebrityThreshold) {
+			// u vient de cesser d'être une célébrité
+			u.refreshFollowerInboxes();
+		}
+		return true;
 	}
 
 	/**
@@ -429,6 +668,21 @@ public class User implements Iterable<Post>, ExtendedListIterator<Post> {
 		return followers.size();
 	}
 
+	/**
+	 * Renvoie true si cet utilisateur a plus de getCelebrityThreshold()
+	 * followers. Les Post d'une célébrité ne sont pas recopiés dans les NewsFeed
+	 * matérialisés de ses followers, mais fusionnés au moment de la lecture.
+	 * 
+	 * @return true si cet utilisateur est une célébrité; false sinon
+	 * 
+	 * @ensures \result <==> getFollowerNb() > getCelebrityThreshold();
+	 * 
+	 * @pure
+	 */
+	public boolean isCelebrity() {
+		return followers.size() > celebrityThreshold;
+	}
+
 	/**
 	 * Renvoie le ième plus récent Post de ce User.
 	 * 
@@ -494,16 +748,288 @@ public class User implements Iterable<Post>, ExtendedListIterator<Post> {
 		if (p == null) {
 			throw new NullPointerException();
 		}
-		if (posts.contains(p)) {
+		// Les Post étant triés par date, un Post déjà présent ne peut être
+		// postérieur au plus récent: ce test suffit à détecter les doublons.
+		if (!posts.isEmpty() && !p.isAfter(posts.get(0))) {
 			throw new IllegalArgumentException();
 		}
-		posts.add(p);
-		nextIndex++;
-		previousIndex++;
-		lastIndex++;
+		posts.addFirst(p);
+		if (p instanceof SimplePost) {
+			((SimplePost) p).setOwner(this);
+		}
+		if (lastIndex > -1) {
+			nextIndex++;
+			previousIndex++;
+			lastIndex++;
+		}
+		fanOut(p);
 		return p;
 	}
 
+	/**
+	 * Recopie le Post spécifié, publié par cet utilisateur, dans le NewsFeed
+	 * matérialisé de cet utilisateur et, s'il n'est pas une célébrité, de ceux de
+	 * ses followers qui sont en mode "push". Le Post est également transmis aux
+	 * LiveFeed ouverts de cet utilisateur et de ses followers. Les followers en
+	 * mode "push" et ceux dont le LiveFeed est ouvert sont mémorisés à part, de
+	 * sorte que les followers en mode "pull" ne sont jamais parcourus: leur
+	 * NewsFeed est construit à la lecture (voir newsFeed(int, FeedCursor)).
+	 */
+	private void fanOut(Post p) {
+		// Les premières pages en cache qui incluent les Post de cet utilisateur
+		// sont périmées; chaque follower ainsi parcouru s'est inscrit lors de la
+		// construction (en O(k)) d'une première page depuis le dernier Post
+		feedVersion.incrementAndGet();
+		for (User f : cachedFollowers) {
+			cachedFollowers.remove(f);
+			f.feedVersion.incrementAndGet();
+		}
+		Inbox box = inbox;
+		if (box != null) {
+			box.add(p, this);
+		}
+		LiveFeed live = liveFeed;
+		if (live != null) {
+			live.publish(p);
+		}
+		for (User f : liveFollowers) {
+			live = f.liveFeed;
+			if (live != null) {
+				live.publish(p);
+			}
+		}
+		if (isCelebrity()) {
+			return;
+		}
+		for (User f : pushFollowers) {
+			box = f.inbox;
+			if (box != null) {
+				box.add(p, this);
+			}
+		}
+	}
+
+	/**
+	 * Active un nouveau classement des capacity Post les plus "likés" de cet
+	 * utilisateur. Le classement est initialisé avec les Post existants de cet
+	 * utilisateur puis tenu à jour à chaque like nouveau de l'un de ses
+	 * SimplePost (voir Leaderboard).
+	 * 
+	 * @param capacity nombre de Post du classement
+	 * 
+	 * @return le nouveau classement des Post de cet utilisateur
+	 * 
+	 * @throws IllegalArgumentException si capacity <= 0
+	 * 
+	 * @requires capacity > 0;
+	 * @ensures getLeaderboard() == \result;
+	 * @ensures \result.size() == Math.min(capacity, getPostNb());
+	 */
+	public synchronized Leaderboard enableLeaderboard(int capacity) {
+		Leaderboard board = new Leaderboard(capacity);
+		for (Post p : posts.snapshot()) {
+			board.update(p);
+		}
+		leaderboard = board;
+		return board;
+	}
+
+	/**
+	 * Renvoie le classement des Post les plus "likés" de cet utilisateur, ou null
+	 * s'il n'est pas activé.
+	 * 
+	 * @return le classement des Post de cet utilisateur ou null
+	 * 
+	 * @pure
+	 */
+	public Leaderboard getLeaderboard() {
+		return leaderboard;
+	}
+
+	/**
+	 * Désactive le classement des Post les plus "likés" de cet utilisateur.
+	 * 
+	 * @ensures getLeaderboard() == null;
+	 */
+	public synchronized void disableLeaderboard() {
+		leaderboard = null;
+	}
+
+	/**
+	 * Renvoie le LiveFeed de cet utilisateur, en l'ouvrant avec un tampon de
+	 * Flow.defaultBufferSize() Post par abonné s'il n'est pas déjà ouvert. Chaque
+	 * Post publié ultérieurement par cet utilisateur ou par un utilisateur auquel
+	 * il est abonné est transmis aux abonnés de ce LiveFeed.
+	 * 
+	 * @return le LiveFeed de cet utilisateur
+	 * 
+	 * @ensures \result != null && !\result.isClosed();
+	 * @ensures liveFeed() == \result;
+	 */
+	public synchronized LiveFeed liveFeed() {
+		LiveFeed live = liveFeed;
+		if (live == null || live.isClosed()) {
+			live = new LiveFeed(ForkJoinPool.commonPool(), Flow.defaultBufferSize());
+			setLiveFeed(live);
+		}
+		return live;
+	}
+
+	/**
+	 * Ouvre un nouveau LiveFeed pour cet utilisateur, avec un tampon d'au plus
+	 * bufferCapacity Post par abonné, transmettant les Post au moyen de
+	 * l'Executor spécifié. L'éventuel LiveFeed précédent est fermé.
+	 * 
+	 * @param executor       l'Executor transmettant les Post aux abonnés
+	 * @param bufferCapacity nombre maximal de Post en attente par abonné
+	 * 
+	 * @return le nouveau LiveFeed de cet utilisateur
+	 * 
+	 * @throws NullPointerException     si executor est null
+	 * @throws IllegalArgumentException si bufferCapacity <= 0
+	 * 
+	 * @requires executor != null;
+	 * @requires bufferCapacity > 0;
+	 * @ensures liveFeed() == \result;
+	 */
+	public synchronized LiveFeed openLiveFeed(Executor executor, int bufferCapacity) {
+		if (executor == null) {
+			throw new NullPointerException();
+		}
+		if (bufferCapacity <= 0) {
+			throw new IllegalArgumentException();
+		}
+		closeLiveFeed();
+		LiveFeed live = new LiveFeed(executor, bufferCapacity);
+		setLiveFeed(live);
+		return live;
+	}
+
+	/**
+	 * Ferme le LiveFeed de cet utilisateur s'il est ouvert: ses abonnés sont
+	 * informés de la fin du flux.
+	 */
+	public synchronized void closeLiveFeed() {
+		LiveFeed live = liveFeed;
+		setLiveFeed(null);
+		if (live != null) {
+			live.close();
+		}
+	}
+
+	/**
+	 * Remplace le LiveFeed de cet utilisateur et, s'il vient d'être ouvert ou
+	 * fermé, ajoute ou retire cet utilisateur des followers à LiveFeed ouvert de
+	 * ses abonnements.
+	 */
+	private void setLiveFeed(LiveFeed live) {
+		boolean wasOpen = liveFeed != null;
+		liveFeed = live;
+		if (wasOpen == (live != null)) {
+			return;
+		}
+		for (User u : subs) {
+			if (live != null) {
+				u.liveFollowers.add(this);
+			} else {
+				u.liveFollowers.remove(this);
+			}
+		}
+	}
+
+	/**
+	 * Recopie les Post de cet utilisateur, qui vient de cesser d'être une
+	 * célébrité, dans les NewsFeed matérialisés de ses followers.
+	 */
+	private void refreshFollowerInboxes() {
+		for (User f : pushFollowers) {
+			Inbox box = f.inbox;
+			if (box != null) {
+				box.refreshAuthor(this);
+			}
+		}
+	}
+
+	/**
+	 * Passe cet utilisateur en mode "push": son NewsFeed est désormais matérialisé
+	 * et contient les capacity Post les plus récents de cet utilisateur et des
+	 * utilisateurs auxquels il est abonné. Chaque publication d'un de ces
+	 * utilisateurs est recopiée dans ce NewsFeed matérialisé, et les abonnements
+	 * et désabonnements ultérieurs y ajoutent ou en retirent les Post concernés.
+	 * En mode "push", newsFeed(int, FeedCursor) se contente de parcourir ce
+	 * NewsFeed matérialisé et ne peut donc énumérer plus de capacity Post.
+	 * 
+	 * Les Post des célébrités (voir isCelebrity()) ne sont pas recopiés: ils sont
+	 * fusionnés avec ce NewsFeed matérialisé au moment de la lecture (mode
+	 * hybride), jusqu'à la date de sa plus ancienne entrée.
+	 * 
+	 * Si cet utilisateur était déjà en mode "push", son NewsFeed matérialisé est
+	 * reconstruit avec la capacité spécifiée.
+	 * 
+	 * @param capacity nombre maximal de Post du NewsFeed matérialisé
+	 * 
+	 * @throws IllegalArgumentException si capacity <= 0
+	 * 
+	 * @requires capacity > 0;
+	 * @ensures isPushFeed();
+	 */
+	public synchronized void enablePushFeed(int capacity) {
+		if (capacity <= 0) {
+			throw new IllegalArgumentException();
+		}
+		Inbox box = new Inbox(capacity);
+		box.backfill(this);
+		for (User u : subs) {
+			if (!u.isCelebrity()) {
+				box.backfill(u);
+			}
+		}
+		setInbox(box);
+	}
+
+	/**
+	 * Repasse cet utilisateur en mode "pull": son NewsFeed matérialisé est
+	 * abandonné et newsFeed(int, FeedCursor) fusionne de nouveau les Post des
+	 * utilisateurs concernés au moment de la lecture.
+	 * 
+	 * @ensures !isPushFeed();
+	 */
+	public synchronized void disablePushFeed() {
+		setInbox(null);
+	}
+
+	/**
+	 * Remplace le NewsFeed matérialisé de cet utilisateur et, s'il vient d'être
+	 * créé ou abandonné, ajoute ou retire cet utilisateur des followers en mode
+	 * "push" de ses abonnements.
+	 */
+	private void setInbox(Inbox box) {
+		boolean wasPush = inbox != null;
+		inbox = box;
+		if (wasPush == (box != null)) {
+			return;
+		}
+		for (User u : subs) {
+			if (box != null) {
+				u.pushFollowers.add(this);
+			} else {
+				u.pushFollowers.remove(this);
+			}
+		}
+	}
+
+	/**
+	 * Renvoie true si le NewsFeed de cet utilisateur est matérialisé (mode
+	 * "push").
+	 * 
+	 * @return true si cet utilisateur est en mode "push"; false sinon
+	 * 
+	 * @pure
+	 */
+	public boolean isPushFeed() {
+		return inbox != null;
+	}
+
 	/**
 	 * Renvoie le nombre de Post de cet utilisateur.
 	 * 
@@ -517,33 +1043,327 @@ public class User implements Iterable<Post>, ExtendedListIterator<Post> {
 		return posts.size();
 	}
 
+	/**
+	 * Renvoie au plus limit Post "likés" par cet utilisateur, du plus récent au
+	 * plus ancien selon leur date de création, qui suivent le Post after dans cet
+	 * ordre (ou les plus récents si after est null). Deux Post de même date sont
+	 * ordonnés du dernier liké au premier, de sorte qu'aucun n'est omis à la
+	 * limite de deux pages. Le Post après lequel commencer la page suivante est
+	 * le dernier Post de la page renvoyée.
+	 * 
+	 * Les Post likés par chaque utilisateur sont indexés lors de chaque like
+	 * nouveau, de sorte que le coût d'une page est O(log n + limit) pour n Post
+	 * likés, indépendamment du nombre total de Post.
+	 * 
+	 * @param limit nombre maximal de Post renvoyés
+	 * @param after le dernier Post de la page précédente, ou null pour obtenir la
+	 *              première page
+	 * 
+	 * @return une liste non modifiable des Post likés par cet utilisateur
+	 * 
+	 * @throws IllegalArgumentException si limit <= 0
+	 * 
+	 * @requires limit > 0;
+	 * @ensures \result != null;
+	 * @ensures \result.size() <= limit;
+	 * @ensures (\forall Post p; \result.contains(p); p.hasLikeFrom(this));
+	 * @ensures (\forall int i, j; i >= 0 && i < j && j < \result.size();
+	 *          !\result.get(i).isBefore(\result.get(j)));
+	 * @ensures after != null ==> (\forall Post p; \result.contains(p);
+	 *          !p.isAfter(after) && p != after);
+	 * 
+	 * @pure
+	 */
+	public List<Post> getLikedPosts(int limit, Post after) {
+		if (limit <= 0) {
+			throw new IllegalArgumentException();
+		}
+		LikedPostIndex index = likedPosts;
+		if (index == null) {
+			return Collections.emptyList();
+		}
+		return Collections.unmodifiableList(index.page(limit, after));
+	}
+
+	/**
+	 * Renvoie le nombre de Post "likés" par cet utilisateur.
+	 * 
+	 * @return le nombre de Post likés par cet utilisateur
+	 * 
+	 * @ensures \result >= 0;
+	 * 
+	 * @pure
+	 */
+	public int getLikedPostNb() {
+		LikedPostIndex index = likedPosts;
+		return index == null ? 0 : index.size();
+	}
+
+	/**
+	 * Enregistre le Post spécifié parmi les Post likés par cet utilisateur. Appelé
+	 * par les Post lors de chaque like nouveau de cet utilisateur.
+	 * 
+	 * @param p le Post "liké"
+	 * 
+	 * @requires p != null;
+	 */
+	void recordLike(Post p) {
+		likedPostIndex().add(p);
+	}
+
+	/**
+	 * Enregistre le Post spécifié parmi les Post likés par cet utilisateur s'il
+	 * n'y figure pas déjà, et renvoie true s'il a été enregistré. Appelé par les
+	 * Post en mode approché, qui ne mémorisent plus leurs likers: l'index de cet
+	 * utilisateur décide alors seul de la nouveauté du like.
+	 * 
+	 * @param p le Post "liké"
+	 * 
+	 * @return true si p ne figurait pas parmi les Post likés par cet utilisateur
+	 * 
+	 * @requires p != null;
+	 * @ensures hasRecordedLike(p);
+	 * @ensures \result <==> !\old(hasRecordedLike(p));
+	 */
+	boolean recordLikeIfAbsent(Post p) {
+		return likedPostIndex().addIfAbsent(p);
+	}
+
+	/**
+	 * Renvoie true si le Post spécifié figure parmi les Post likés par cet
+	 * utilisateur.
+	 * 
+	 * @param p le Post cherché
+	 * 
+	 * @return true si p figure parmi les Post likés par cet utilisateur
+	 * 
+	 * @requires p != null;
+	 * 
+	 * @pure
+	 */
+	boolean hasRecordedLike(Post p) {
+		LikedPostIndex index = likedPosts;
+		return index != null && index.contains(p);
+	}
+
+	// Renvoie l'index des Post likés par cet utilisateur, créé au premier like
+	private LikedPostIndex likedPostIndex() {
+		LikedPostIndex index = likedPosts;
+		if (index == null) {
+			synchronized (this) {
+				index = likedPosts;
+				if (index == null) {
+					index = new LikedPostIndex();
+					likedPosts = index;
+				}
+			}
+		}
+		return index;
+	}
+
 	/**
 	 * Renvoie un NewsFeed de cet utilisateur. Ce NewsFeed interdit toute
 	 * modification, il est obtenu en fusionnant les listes de Post de cet
-	 * utilisateur et des utilisateurs auxquels il est abonné, il utilise les
-	 * itérateurs natifs des User. L'appel de cette méthode réinitialise les
-	 * itérateurs natifs de ce User ainsi que ceux des User auxquels il est abonné,
-	 * comme le ferait un appel à startIteration(). Ce NewsFeed énumère les Post par
-	 * ordre de date du plus récent au plus ancien.
+	 * utilisateur et des utilisateurs auxquels il est abonné telles qu'elles sont
+	 * au moment de l'appel. Il utilise un TimelineCursor indépendant par User
+	 * fusionné, de sorte que les itérateurs natifs des User ne sont ni utilisés
+	 * ni modifiés et que plusieurs NewsFeed peuvent être parcourus simultanément,
+	 * y compris depuis des threads différents. Ce NewsFeed énumère les Post par
+	 * ordre de date du plus récent au plus ancien et, à date égale, par
+	 * identifiant croissant de leur auteur, comme newsFeed(int, FeedCursor).
 	 * 
 	 * @return un NewsFeed pour cet utilisateur
 	 * 
 	 * @ensures \result != null;
-	 * @ensures lastIndex() == -1 && nextIndex() == 0 && previousIndex() == -1;
-	 * @ensures (\forall User u; hasSubscriptionTo(u); u.lastIndex() == -1 &&
-	 *          u.nextIndex() == 0 && u.previousIndex() == -1);
+	 * @ensures lastIndex() == \old(lastIndex()) && nextIndex() ==
+	 *          \old(nextIndex()) && previousIndex() == \old(previousIndex());
+	 * @ensures (\forall User u; hasSubscriptionTo(u); u.lastIndex() ==
+	 *          \old(u.lastIndex()) && u.nextIndex() == \old(u.nextIndex()) &&
+	 *          u.previousIndex() == \old(u.previousIndex()));
 	 * @ensures \resmodel = new ListIterObserverAdapter(\result);
 	 * @ensures !\resmodel.contains(null);
 	 * @ensures \resmodel.isSorted(Comparator.reverseOrder());
 	 * @ensures \resmodel.containsAll(getPosts());
 	 * @ensures (\forall User u; hasSubscriptionTo(u);
 	 *          \resmodel.containsAll(getPosts()));
+	 * @ensures (\forall int limit; limit > 0; newsFeed(limit,
+	 *          null).getPosts().equals(first limit elements of \resmodel));
+	 * 
+	 */
+	public FusionSortedIterator<Post, TimelineCursor> newsFeed() {
+		Set<TimelineCursor> cursors = new TreeSet<TimelineCursor>(CURSOR_ORDER);
+		for (User u : subs) {
+			cursors.add(u.cursor());
+		}
+		cursors.add(cursor());
+		return new FusionSortedIterator<Post, TimelineCursor>(cursors, Comparator.reverseOrder());
+	}
+
+	/**
+	 * Renvoie le NewsFeed de cet utilisateur restreint aux Post dont la date est
+	 * comprise entre from (incluse) et to (exclue), du plus récent au plus ancien.
+	 * Comme newsFeed(), ce NewsFeed fusionne des TimelineCursor indépendants, mais
+	 * chacun d'eux est positionné sur la fenêtre par recherche dichotomique dans
+	 * la liste des Post de son User: seuls les Post de la fenêtre sont examinés,
+	 * pour un coût en O(k.log(n) + r), k étant le nombre d'utilisateurs fusionnés,
+	 * n leur nombre de Post et r le nombre de Post de la fenêtre.
+	 * 
+	 * @param from date de début de la fenêtre (incluse)
+	 * @param to   date de fin de la fenêtre (exclue)
+	 * 
+	 * @return le NewsFeed de cet utilisateur restreint à la fenêtre spécifiée
+	 * 
+	 * @throws NullPointerException     si from ou to est null
+	 * @throws IllegalArgumentException si from est postérieure à to
+	 * 
+	 * @requires from != null && to != null;
+	 * @requires !from.isAfter(to);
+	 * @ensures \result != null;
+	 * @ensures \resmodel = new ListIterObserverAdapter(\result);
+	 * @ensures \resmodel.isSorted(Comparator.reverseOrder());
+	 * @ensures \resmodel.equals(the Post p of newsFeed() such that
+	 *          !p.getDate().isBefore(from) && p.getDate().isBefore(to));
+	 * 
+	 * @pure
+	 */
+	public FusionSortedIterator<Post, TimelineCursor> newsFeed(Instant from, Instant to) {
+		if (from == null || to == null) {
+			throw new NullPointerException();
+		}
+		if (from.isAfter(to)) {
+			throw new IllegalArgumentException();
+		}
+		Set<TimelineCursor> cursors = new TreeSet<TimelineCursor>(CURSOR_ORDER);
+		for (User u : subs) {
+			cursors.add(new TimelineCursor(u, u.posts.window(from, to)));
+		}
+		cursors.add(new TimelineCursor(this, posts.window(from, to)));
+		return new FusionSortedIterator<Post, TimelineCursor>(cursors, Comparator.reverseOrder());
+	}
+
+	/**
+	 * Renvoie un nouvel itérateur indépendant sur les Post de cet utilisateur, du
+	 * plus récent au plus ancien, tels qu'ils sont au moment de l'appel. Cet
+	 * itérateur est obtenu en temps constant, sans copie des Post, et son
+	 * utilisation ne modifie pas l'itérateur natif de cet utilisateur.
+	 * 
+	 * @return un nouvel itérateur sur les Post de cet utilisateur
+	 * 
+	 * @ensures \result != null;
+	 * @ensures \result.getUser() == this;
+	 * @ensures \result.size() == getPostNb();
+	 * @ensures \result.nextIndex() == 0 && \result.lastIndex() == -1;
+	 * 
+	 * @pure
+	 */
+	public TimelineCursor cursor() {
+		return new TimelineCursor(this, posts.snapshot());
+	}
+
+	/**
+	 * Renvoie une page du NewsFeed de cet utilisateur: au plus limit Post, du plus
+	 * récent au plus ancien, parmi les Post de cet utilisateur et des utilisateurs
+	 * auxquels il est abonné, énumérés à partir de la position spécifiée. La page
+	 * renvoyée fournit la position de la page suivante (voir
+	 * FeedPage.getNextCursor()); les Post publiés entre deux appels n'altèrent pas
+	 * la suite de l'énumération.
+	 * 
+	 * Seuls les Post de la page sont examinés, de sorte que le coût d'un appel
+	 * est proportionnel à limit * log(k), k étant le nombre d'utilisateurs
+	 * fusionnés, et non au nombre total de Post de ces utilisateurs. En mode
+	 * "push" (voir enablePushFeed(int)), la page est lue directement dans le
+	 * NewsFeed matérialisé de cet utilisateur, et fusionnée avec les Post des
+	 * célébrités auxquelles il est abonné s'il y en a. FeedPage.getPath() indique
+	 * la manière dont la page a été construite. Cette méthode ne modifie pas
+	 * l'état des itérateurs natifs des User.
+	 * 
+	 * En mode "pull", les pages récemment construites sont mémorisées dans un
+	 * cache LRU. Une page mémorisée n'est renvoyée que si les abonnements de cet
+	 * utilisateur n'ont pas changé et, pour la première page, si aucun des
+	 * utilisateurs fusionnés n'a publié depuis. Construire une première page
+	 * inscrit cet utilisateur auprès de ses abonnements, et chaque publication
+	 * incrémente la version du NewsFeed de son auteur et des followers inscrits
+	 * auprès de lui, qu'elle désinscrit: la vérification d'une page en cache
+	 * coûte O(1), et une publication ne parcourt que les followers ayant
+	 * construit une première page depuis la précédente, jamais les autres
+	 * followers en mode "pull". Les pages suivantes ne dépendent que de Post
+	 * antérieurs au FeedCursor, qui ne changent plus.
+	 * 
+	 * @param limit nombre maximal de Post de la page
+	 * @param after position de début de la page, telle que renvoyée par
+	 *              FeedPage.getNextCursor(), ou null pour obtenir la première page
+	 * 
+	 * @return une page du NewsFeed de cet utilisateur
+	 * 
+	 * @throws IllegalArgumentException si limit <= 0
+	 * 
+	 * @requires limit > 0;
+	 * @ensures \result != null;
+	 * @ensures \result.getPosts().size() <= limit;
+	 * @ensures \result.hasMore() ==> \result.getPosts().size() == limit;
+	 * @ensures after == null ==> \result.getPosts().equals(first limit elements
+	 *          of newsFeed());
 	 * 
+	 * @pure
 	 */
-	public FusionSortedIterator<Post, User> newsFeed() {
-		Set<User> users = new HashSet<User>(subs);
+	public FeedPage newsFeed(int limit, FeedCursor after) {
+		if (limit <= 0) {
+			throw new IllegalArgumentException();
+		}
+		Inbox box = inbox;
+		if (box != null) {
+			Set<User> pulled = new HashSet<User>();
+			for (User u : subs) {
+				if (u.isCelebrity()) {
+					pulled.add(u);
+				}
+			}
+			FeedPage page = pulled.isEmpty() ? box.page(limit, after) : box.page(limit, after, pulled);
+			FeedMetrics.record(page.getPath());
+			return page;
+		}
+		FeedCache cache = feedCache;
+		if (cache == null) {
+			synchronized (this) {
+				cache = feedCache;
+				if (cache == null) {
+					cache = new FeedCache(FEED_CACHE_CAPACITY);
+					feedCache = cache;
+				}
+			}
+		}
+		int readerVersion = subsVersion.get();
+		int version = after == null ? feedVersion.get() : 0;
+		FeedPage page = cache.get(limit, after, readerVersion, version);
+		if (page != null) {
+			FeedMetrics.recordCacheHit();
+			return page;
+		}
+		if (after == null) {
+			// Inscription avant la fusion: un Post publié depuis la lecture de la
+			// version, même pendant la fusion, incrémente celle-ci
+			for (User u : subs) {
+				u.cachedFollowers.add(this);
+			}
+		}
+		List<User> users = new ArrayList<User>(subs.size() + 1);
+		users.addAll(subs);
 		users.add(this);
-		return new FusionSortedIterator<Post, User>(users);
+		page = PullFeed.page(users, limit, after);
+		cache.put(limit, after, readerVersion, version, page);
+		FeedMetrics.record(page.getPath());
+		return page;
+	}
+
+	/**
+	 * Renvoie la Timeline des Post de cet utilisateur.
+	 * 
+	 * @return la Timeline des Post de cet utilisateur
+	 * 
+	 * @pure
+	 */
+	Timeline timeline() {
+		return posts;
 	}
 
 	/**
@@ -552,7 +1372,9 @@ public class User implements Iterable<Post>, ExtendedListIterator<Post> {
 	 * l'itérateur intégré. L'usage de l'itérateur renvoyé ne mofifie pas l'état de
 	 * cette instance en tant qu'itérateur tel qu'il peut être observé à l'aide des
 	 * méthodes de cette classe (notamment hasPrevious(), hasNext(), nextIndex(),
-	 * ...).
+	 * ...). L'Iterator renvoyé porte sur les Post existant au moment de l'appel:
+	 * il est obtenu en temps constant, sans copie, et n'est pas affecté par les
+	 * appels ultérieurs à addPost(Post).
 	 * 
 	 * @return un Iterator sur les Post de cet utilisateur
 	 * 
@@ -566,7 +1388,34 @@ public class User implements Iterable<Post>, ExtendedListIterator<Post> {
 	 */
 	@Override
 	public ListIterator<Post> iterator() {
-		return Collections.unmodifiableList(new LinkedList<Post>(posts)).listIterator();
+		return posts.snapshot().listIterator();
+	}
+
+	/**
+	 * Renvoie un Stream séquentiel des Post de cet utilisateur, du plus récent au
+	 * plus ancien, tels qu'ils sont au moment de l'appel. Ce Stream est obtenu sans
+	 * copie des Post; son Spliterator est ORDERED, SORTED (selon
+	 * Comparator.reverseOrder()), NONNULL, SIZED, SUBSIZED et IMMUTABLE, et se
+	 * découpe en plages de dates, de sorte que ce Stream peut être parallélisé
+	 * efficacement (voir Stream.parallel()).
+	 * 
+	 * @return un Stream des Post de cet utilisateur
+	 * 
+	 * @ensures \result != null;
+	 * @ensures \result.toList().equals(getPosts());
+	 * 
+	 * @pure
+	 */
+	public Stream<Post> postStream() {
+		return StreamSupport.stream(SortedMergeSpliterator.of(posts.snapshot(), Comparator.reverseOrder()), false);
+	}
+
+	/**
+	 * Renvoie une vue des Post restant à énumérer par next().
+	 */
+	List<Post> remaining() {
+		List<Post> snapshot = posts.snapshot();
+		return snapshot.subList(Math.min(nextIndex, snapshot.size()), snapshot.size());
 	}
 
 	/**
@@ -692,7 +1541,7 @@ public class User implements Iterable<Post>, ExtendedListIterator<Post> {
 		Post previousPost = getPost(previousIndex);
 		previousIndex--;
 		nextIndex--;
-		lastIndex = previousIndex;
+		lastIndex = nextIndex;
 		return previousPost;
 	}
 
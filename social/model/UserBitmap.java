@@ -0,0 +1,632 @@
+package social.model;
+
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.ListIterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Un ensemble d'User représenté par l'ensemble compressé de leurs identifiants
+ * (voir User.getId()), sur le modèle des "Roaring bitmaps".
+ *
+ * Les identifiants sont répartis en blocs de 65536 valeurs selon leurs 16 bits
+ * de poids fort; chaque bloc non vide est représenté par un conteneur ne
+ * mémorisant que les 16 bits de poids faible, sous la forme la plus compacte
+ * selon sa densité:
+ * <ul>
+ * <li>un tableau trié de char (2 octets par élément) tant que le bloc contient
+ * au plus ARRAY_MAX éléments;</li>
+ * <li>une suite d'intervalles (4 octets par intervalle) lorsque les éléments
+ * forment au plus RUN_MAX intervalles;</li>
+ * <li>une table de 65536 bits (8 Ko) sinon.</li>
+ * </ul>
+ * Les tests d'appartenance et les ajouts se font par recherche dichotomique
+ * parmi les blocs puis dans le conteneur, sans allocation d'objet par élément.
+ *
+ * Les éléments sont énumérés par ordre croissant d'identifiant. Cette classe
+ * n'est pas synchronisée et ne permet que l'ajout d'éléments.
+ *
+ * @invariant size() >= 0;
+ * @invariant !contains(null);
+ */
+final class UserBitmap extends AbstractSet<User> {
+	/**
+	 * Nombre maximal d'éléments d'un conteneur tableau (8 Ko).
+	 */
+	static final int ARRAY_MAX = 4096;
+	/**
+	 * Nombre maximal d'intervalles d'un conteneur d'intervalles (8 Ko).
+	 */
+	static final int RUN_MAX = 2048;
+
+	private static final char[] NO_KEY = new char[0];
+	private static final Container[] NO_CONTAINER = new Container[0];
+
+	private char[] keys;
+	private Container[] containers;
+	private int containerNb;
+	private int size;
+
+	/**
+	 * Initialise un UserBitmap vide.
+	 *
+	 * @ensures isEmpty();
+	 */
+	UserBitmap() {
+		this.keys = NO_KEY;
+		this.containers = NO_CONTAINER;
+		this.containerNb = 0;
+		this.size = 0;
+	}
+
+	@Override
+	public int size() {
+		return size;
+	}
+
+	@Override
+	public boolean contains(Object o) {
+		return o instanceof User && containsId(((User) o).getId());
+	}
+
+	/**
+	 * Ajoute l'User spécifié à cet ensemble.
+	 *
+	 * @param u l'User à ajouter
+	 *
+	 * @return true si l'User ne faisait pas déjà partie de cet ensemble
+	 *
+	 * @throws NullPointerException si u est null
+	 *
+	 * @ensures contains(u);
+	 * @ensures \result <==> !\old(contains(u));
+	 */
+	@Override
+	public boolean add(User u) {
+		return addId(u.getId());
+	}
+
+	/**
+	 * Renvoie true si cet ensemble contient l'User d'identifiant spécifié.
+	 *
+	 * @param id l'identifiant cherché
+	 *
+	 * @return true si cet ensemble contient l'User d'identifiant spécifié
+	 *
+	 * @requires id >= 0;
+	 *
+	 * @pure
+	 */
+	boolean containsId(int id) {
+		int k = indexOfKey(high(id));
+		return k >= 0 && containers[k].contains(low(id));
+	}
+
+	/**
+	 * Ajoute l'identifiant spécifié à cet ensemble.
+	 *
+	 * @param id l'identifiant à ajouter
+	 *
+	 * @return true si l'identifiant ne faisait pas déjà partie de cet ensemble
+	 *
+	 * @requires id >= 0;
+	 * @ensures containsId(id);
+	 */
+	boolean addId(int id) {
+		char key = high(id);
+		char value = low(id);
+		int k = indexOfKey(key);
+		if (k < 0) {
+			k = -k - 1;
+			insertContainer(k, key);
+		} else if (containers[k].contains(value)) {
+			return false;
+		}
+		containers[k] = containers[k].add(value);
+		size++;
+		return true;
+	}
+
+	/**
+	 * Ajoute à cet ensemble les identifiants ids[from] à ids[to - 1], triés par
+	 * ordre croissant, et renvoie le nombre d'identifiants nouveaux. Les
+	 * identifiants d'un même bloc sont ajoutés à la suite dans son conteneur,
+	 * agrandi une seule fois pour l'ensemble du lot. Au retour, les identifiants
+	 * nouveaux occupent les cases ids[from] à ids[from + \result - 1].
+	 *
+	 * @param ids  les identifiants à ajouter
+	 * @param from index du premier identifiant à ajouter
+	 * @param to   index suivant le dernier identifiant à ajouter
+	 *
+	 * @return le nombre d'identifiants ne faisant pas déjà partie de cet ensemble
+	 *
+	 * @requires (\forall int i; i >= from && i < to; ids[i] >= 0);
+	 * @requires (\forall int i; i > from && i < to; ids[i - 1] <= ids[i]);
+	 * @ensures (\forall int i; i >= from && i < to; containsId(ids[i]));
+	 */
+	int addIds(int[] ids, int from, int to) {
+		int added = 0;
+		int i = from;
+		while (i < to) {
+			char key = high(ids[i]);
+			int end = i + 1;
+			while (end < to && high(ids[end]) == key) {
+				end++;
+			}
+			int k = indexOfKey(key);
+			if (k < 0) {
+				k = -k - 1;
+				insertContainer(k, key);
+			}
+			Container c = containers[k];
+			c.reserve(end - i);
+			for (; i < end; i++) {
+				char value = low(ids[i]);
+				if (!c.contains(value)) {
+					c = c.add(value);
+					ids[from + added] = ids[i];
+					added++;
+				}
+			}
+			containers[k] = c;
+		}
+		size += added;
+		return added;
+	}
+
+	/**
+	 * Renvoie le plus petit identifiant de cet ensemble supérieur ou égal à from,
+	 * ou -1 s'il n'en existe pas.
+	 */
+	int nextId(int from) {
+		int k = indexOfKey(high(from));
+		if (k >= 0) {
+			int v = containers[k].nextValue(low(from));
+			if (v >= 0) {
+				return keys[k] << 16 | v;
+			}
+			k++;
+		} else {
+			k = -k - 1;
+		}
+		return k < containerNb ? keys[k] << 16 | containers[k].nextValue(0) : -1;
+	}
+
+	/**
+	 * Renvoie le plus grand identifiant de cet ensemble inférieur ou égal à from,
+	 * ou -1 s'il n'en existe pas.
+	 */
+	int previousId(int from) {
+		int k = indexOfKey(high(from));
+		if (k >= 0) {
+			int v = containers[k].previousValue(low(from));
+			if (v >= 0) {
+				return keys[k] << 16 | v;
+			}
+			k--;
+		} else {
+			k = -k - 2;
+		}
+		return k >= 0 ? keys[k] << 16 | containers[k].previousValue(Character.MAX_VALUE) : -1;
+	}
+
+	/**
+	 * Renvoie une estimation du nombre d'octets occupés par les conteneurs de cet
+	 * ensemble.
+	 *
+	 * @return une estimation de la taille mémoire de cet ensemble
+	 *
+	 * @pure
+	 */
+	long sizeInBytes() {
+		long bytes = 2L * keys.length + 4L * containers.length;
+		for (int k = 0; k < containerNb; k++) {
+			bytes += containers[k].sizeInBytes();
+		}
+		return bytes;
+	}
+
+	@Override
+	public Iterator<User> iterator() {
+		return listIterator();
+	}
+
+	/**
+	 * Renvoie un itérateur bidirectionnel non modifiable sur les User de cet
+	 * ensemble, par ordre croissant d'identifiant. L'itérateur ne copie pas
+	 * l'ensemble: il lève une ConcurrentModificationException si un élément est
+	 * ajouté pendant l'itération.
+	 *
+	 * @return un itérateur sur les User de cet ensemble
+	 *
+	 * @pure
+	 */
+	ListIterator<User> listIterator() {
+		return new UserIterator();
+	}
+
+	private int indexOfKey(char key) {
+		return Arrays.binarySearch(keys, 0, containerNb, key);
+	}
+
+	private void insertContainer(int k, char key) {
+		if (containerNb == keys.length) {
+			int capacity = Math.max(4, containerNb + (containerNb >> 1));
+			keys = Arrays.copyOf(keys, capacity);
+			containers = Arrays.copyOf(containers, capacity);
+		}
+		System.arraycopy(keys, k, keys, k + 1, containerNb - k);
+		System.arraycopy(containers, k, containers, k + 1, containerNb - k);
+		keys[k] = key;
+		containers[k] = new ArrayContainer();
+		containerNb++;
+	}
+
+	private static char high(int id) {
+		return (char) (id >>> 16);
+	}
+
+	private static char low(int id) {
+		return (char) id;
+	}
+
+	/**
+	 * Itérateur bidirectionnel sur les User d'un UserBitmap. La position courante
+	 * est mémorisée par l'identifiant qui la suit, chaque déplacement étant une
+	 * recherche dans l'ensemble en O(log containerNb).
+	 */
+	private final class UserIterator implements ListIterator<User> {
+		private final int expectedSize = size;
+		// Identifiants du prochain élément et du précédent, ou -1
+		private int nextId = UserBitmap.this.nextId(0);
+		private int previousId = -1;
+		private int nextIndex = 0;
+
+		@Override
+		public boolean hasNext() {
+			return nextId >= 0;
+		}
+
+		@Override
+		public User next() {
+			checkForComodification();
+			if (nextId < 0) {
+				throw new NoSuchElementException();
+			}
+			previousId = nextId;
+			nextId = nextId == Integer.MAX_VALUE ? -1 : UserBitmap.this.nextId(nextId + 1);
+			nextIndex++;
+			return User.getUser(previousId);
+		}
+
+		@Override
+		public boolean hasPrevious() {
+			return previousId >= 0;
+		}
+
+		@Override
+		public User previous() {
+			checkForComodification();
+			if (previousId < 0) {
+				throw new NoSuchElementException();
+			}
+			nextId = previousId;
+			previousId = previousId == 0 ? -1 : UserBitmap.this.previousId(previousId - 1);
+			nextIndex--;
+			return User.getUser(nextId);
+		}
+
+		@Override
+		public int nextIndex() {
+			return nextIndex;
+		}
+
+		@Override
+		public int previousIndex() {
+			return nextIndex - 1;
+		}
+
+		@Override
+		public void remove() {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public void set(User u) {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public void add(User u) {
+			throw new UnsupportedOperationException();
+		}
+
+		private void checkForComodification() {
+			if (size != expectedSize) {
+				throw new ConcurrentModificationException();
+			}
+		}
+	}
+
+	/**
+	 * Un bloc non vide de 65536 valeurs possibles. add(char) renvoie le conteneur
+	 * représentant le bloc après l'ajout, éventuellement d'une autre forme.
+	 */
+	private abstract static class Container {
+		abstract boolean contains(char value);
+
+		/**
+		 * @requires !contains(value);
+		 */
+		abstract Container add(char value);
+
+		/**
+		 * Renvoie la plus petite valeur >= from de ce conteneur, ou -1.
+		 */
+		abstract int nextValue(int from);
+
+		/**
+		 * Renvoie la plus grande valeur <= from de ce conteneur, ou -1.
+		 */
+		abstract int previousValue(int from);
+
+		abstract long sizeInBytes();
+
+		/**
+		 * Prépare ce conteneur à l'ajout de extra valeurs.
+		 */
+		void reserve(int extra) {
+		}
+	}
+
+	/**
+	 * Conteneur des blocs peu denses: les valeurs triées par ordre croissant.
+	 */
+	private static final class ArrayContainer extends Container {
+		private char[] values = new char[4];
+		private int n = 0;
+
+		@Override
+		boolean contains(char value) {
+			return Arrays.binarySearch(values, 0, n, value) >= 0;
+		}
+
+		@Override
+		Container add(char value) {
+			if (n == ARRAY_MAX) {
+				return convert().add(value);
+			}
+			int i = -Arrays.binarySearch(values, 0, n, value) - 1;
+			if (n == values.length) {
+				values = Arrays.copyOf(values, Math.min(ARRAY_MAX, n + (n >> 1)));
+			}
+			System.arraycopy(values, i, values, i + 1, n - i);
+			values[i] = value;
+			n++;
+			return this;
+		}
+
+		@Override
+		void reserve(int extra) {
+			if (n + extra > values.length) {
+				values = Arrays.copyOf(values, Math.min(ARRAY_MAX, n + extra));
+			}
+		}
+
+		/**
+		 * Renvoie un conteneur d'intervalles ou une table de bits contenant les
+		 * valeurs de ce conteneur, selon la forme la plus compacte.
+		 */
+		private Container convert() {
+			int runNb = 0;
+			for (int i = 0; i < n; i++) {
+				if (i == 0 || values[i] != values[i - 1] + 1) {
+					runNb++;
+				}
+			}
+			if (runNb < RUN_MAX) {
+				RunContainer runs = new RunContainer(runNb);
+				for (int i = 0; i < n; i++) {
+					runs.append(values[i]);
+				}
+				return runs;
+			}
+			BitmapContainer bitmap = new BitmapContainer();
+			for (int i = 0; i < n; i++) {
+				bitmap.set(values[i]);
+			}
+			return bitmap;
+		}
+
+		@Override
+		int nextValue(int from) {
+			int i = Arrays.binarySearch(values, 0, n, (char) from);
+			if (i < 0) {
+				i = -i - 1;
+			}
+			return i < n ? values[i] : -1;
+		}
+
+		@Override
+		int previousValue(int from) {
+			int i = Arrays.binarySearch(values, 0, n, (char) from);
+			if (i < 0) {
+				i = -i - 2;
+			}
+			return i >= 0 ? values[i] : -1;
+		}
+
+		@Override
+		long sizeInBytes() {
+			return 16L + 2L * values.length;
+		}
+	}
+
+	/**
+	 * Conteneur des blocs denses: une table de 65536 bits.
+	 */
+	private static final class BitmapContainer extends Container {
+		private final long[] words = new long[1024];
+
+		void set(int value) {
+			words[value >>> 6] |= 1L << value;
+		}
+
+		@Override
+		boolean contains(char value) {
+			return (words[value >>> 6] & 1L << value) != 0;
+		}
+
+		@Override
+		Container add(char value) {
+			set(value);
+			return this;
+		}
+
+		@Override
+		int nextValue(int from) {
+			int w = from >>> 6;
+			long word = words[w] & -1L << from;
+			while (word == 0) {
+				w++;
+				if (w == words.length) {
+					return -1;
+				}
+				word = words[w];
+			}
+			return w << 6 | Long.numberOfTrailingZeros(word);
+		}
+
+		@Override
+		int previousValue(int from) {
+			int w = from >>> 6;
+			long word = words[w] & -1L >>> 63 - (from & 63);
+			while (word == 0) {
+				w--;
+				if (w < 0) {
+					return -1;
+				}
+				word = words[w];
+			}
+			return w << 6 | 63 - Long.numberOfLeadingZeros(word);
+		}
+
+		@Override
+		long sizeInBytes() {
+			return 16L + 8L * words.length;
+		}
+	}
+
+	/**
+	 * Conteneur des blocs formés de longues suites de valeurs consécutives: les
+	 * intervalles [starts[i], starts[i] + lengths[i]], triés et disjoints, deux
+	 * intervalles successifs n'étant jamais contigus.
+	 */
+	private static final class RunContainer extends Container {
+		private char[] starts, lengths;
+		private int runNb = 0;
+
+		RunContainer(int capacity) {
+			this.starts = new char[capacity];
+			this.lengths = new char[capacity];
+		}
+
+		/**
+		 * Ajoute une valeur supérieure à toutes celles de ce conteneur.
+		 */
+		void append(char value) {
+			if (runNb > 0 && end(runNb - 1) + 1 == value) {
+				lengths[runNb - 1]++;
+			} else {
+				insertRun(runNb, value);
+			}
+		}
+
+		private int end(int i) {
+			return starts[i] + lengths[i];
+		}
+
+		/**
+		 * Renvoie l'index du dernier intervalle commençant avant value, ou -1.
+		 */
+		private int runIndex(int value) {
+			int i = Arrays.binarySearch(starts, 0, runNb, (char) value);
+			return i >= 0 ? i : -i - 2;
+		}
+
+		@Override
+		boolean contains(char value) {
+			int i = runIndex(value);
+			return i >= 0 && value <= end(i);
+		}
+
+		@Override
+		Container add(char value) {
+			int i = runIndex(value);
+			boolean joinsNext = i + 1 < runNb && starts[i + 1] == value + 1;
+			if (i >= 0 && end(i) + 1 == value) {
+				lengths[i]++;
+				if (joinsNext) {
+					// value comble l'écart entre les intervalles i et i + 1
+					lengths[i] = (char) (end(i + 1) - starts[i]);
+					removeRun(i + 1);
+				}
+			} else if (joinsNext) {
+				starts[i + 1] = value;
+				lengths[i + 1]++;
+			} else if (runNb == RUN_MAX) {
+				BitmapContainer bitmap = new BitmapContainer();
+				for (int r = 0; r < runNb; r++) {
+					for (int v = starts[r]; v <= end(r); v++) {
+						bitmap.set(v);
+					}
+				}
+				return bitmap.add(value);
+			} else {
+				insertRun(i + 1, value);
+			}
+			return this;
+		}
+
+		private void insertRun(int i, char value) {
+			if (runNb == starts.length) {
+				int capacity = Math.min(RUN_MAX, Math.max(4, runNb + (runNb >> 1)));
+				starts = Arrays.copyOf(starts, capacity);
+				lengths = Arrays.copyOf(lengths, capacity);
+			}
+			System.arraycopy(starts, i, starts, i + 1, runNb - i);
+			System.arraycopy(lengths, i, lengths, i + 1, runNb - i);
+			starts[i] = value;
+			lengths[i] = 0;
+			runNb++;
+		}
+
+		private void removeRun(int i) {
+			System.arraycopy(starts, i + 1, starts, i, runNb - i - 1);
+			System.arraycopy(lengths, i + 1, lengths, i, runNb - i - 1);
+			runNb--;
+		}
+
+		@Override
+		int nextValue(int from) {
+			int i = runIndex(from);
+			if (i >= 0 && from <= end(i)) {
+				return from;
+			}
+			return i + 1 < runNb ? starts[i + 1] : -1;
+		}
+
+		@Override
+		int previousValue(int from) {
+			int i = runIndex(from);
+			return i >= 0 ? Math.min(from, end(i)) : -1;
+		}
+
+		@Override
+		long sizeInBytes() {
+			return 16L + 4L * starts.length;
+		}
+	}
+}
@@ -0,0 +1,85 @@
+package test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import social.model.Post;
+import social.model.SimplePost;
+import social.model.User;
+
+/**
+ * Mesure du coût d'une publication (User.addPost(Post)) selon le nombre de
+ * followers de son auteur et la proportion de ces followers en mode "push".
+ *
+ * Pour chaque nombre de followers, un auteur est suivi par followerNb User dont
+ * un sur pushPeriod passe en mode "push" (0: aucun); le temps moyen d'un
+ * addPost est affiché. Les followers en mode "pull" n'étant jamais parcourus,
+ * ce temps ne doit dépendre que du nombre de followers en mode "push". Usage:
+ *
+ * <pre>
+ * java -cp ... test.BenchFanOut [followerMax] [postNb]
+ * </pre>
+ */
+public class BenchFanOut {
+	// Capacité des NewsFeed matérialisés des followers en mode "push"
+	private static final int INBOX_CAPACITY = 64;
+	// Un follower sur PUSH_PERIODS[i] en mode "push", 0 pour aucun
+	private static final int[] PUSH_PERIODS = { 0, 100, 10, 1 };
+
+	public static void main(String[] args) {
+		int followerMax = args.length > 0 ? Integer.parseInt(args[0]) : 100_000;
+		int postNb = args.length > 1 ? Integer.parseInt(args[1]) : 2_000;
+		String prefix = "BenchFanOut-" + System.nanoTime() + "-";
+		System.out.printf("%10s", "followers");
+		for (int period : PUSH_PERIODS) {
+			System.out.printf(" %14s", period == 0 ? "pull ns/post" : "1/" + period + " ns/post");
+		}
+		System.out.println();
+		int userNb = 0;
+		for (int followerNb = 1_000; followerNb <= followerMax; followerNb *= 10) {
+			System.out.printf("%10d", followerNb);
+			for (int period : PUSH_PERIODS) {
+				User author = new User(prefix + userNb++, "pass");
+				List<User> followers = new ArrayList<User>(followerNb);
+				for (int i = 0; i < followerNb; i++) {
+					User f = new User(prefix + userNb++, "pass");
+					f.addSubscriptionTo(author);
+					if (period != 0 && i % period == 0) {
+						f.enablePushFeed(INBOX_CAPACITY);
+					}
+					followers.add(f);
+				}
+				// Premier passage pour l'échauffement de la JVM
+				run(author, postNb);
+				System.out.printf(" %14.0f", run(author, postNb));
+				for (User f : followers) {
+					f.disablePushFeed();
+				}
+			}
+			System.out.println();
+		}
+	}
+
+	/**
+	 * Renvoie le temps moyen, en nanosecondes, d'une publication de l'auteur
+	 * spécifié.
+	 */
+	private static double run(User author, int postNb) {
+		// Les Post sont créés d'avance, chacun strictement postérieur au précédent
+		List<Post> posts = new ArrayList<Post>(postNb);
+		Post last = author.getPostNb() == 0 ? null : author.getPost(0);
+		for (int i = 0; i < postNb; i++) {
+			Post p = new SimplePost("post " + i);
+			while (last != null && !p.isAfter(last)) {
+				p = new SimplePost("post " + i);
+			}
+			posts.add(p);
+			last = p;
+		}
+		long begin = System.nanoTime();
+		for (Post p : posts) {
+			author.addPost(p);
+		}
+		return (double) (System.nanoTime() - begin) / postNb;
+	}
+}
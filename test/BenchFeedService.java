@@ -0,0 +1,167 @@
+package test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+
+import social.model.FeedPage;
+import social.model.FeedService;
+import social.model.SimplePost;
+import social.model.User;
+
+/**
+ * Générateur de charge comparant les débits et les latences de FeedService avec
+ * des pools de taille fixe de threads système ("platform-N"), un thread système
+ * par demande en cours ("per-request") et des threads virtuels ("virtual").
+ *
+ * Le générateur émet requestNb demandes de premières pages de NewsFeed pour des
+ * lecteurs tirés au hasard, sans attendre leurs réponses; une demande refusée
+ * par la limite d'admission est réémise après une courte pause. Pour chaque
+ * demande sont mesurées séparément l'attente de son admission (de sa première
+ * émission à son admission, colonne "admit p99") et sa latence une fois admise
+ * (de son admission à la disponibilité de sa page, p50 et p99), qui comprend
+ * l'attente d'un thread libre de l'ExecutorService. Le coût d'une page lue
+ * directement, sans FeedService, est affiché au préalable, et les threads
+ * virtuels sont finalement comparés au pool de threads système de meilleur
+ * débit. Usage:
+ *
+ * <pre>
+ * java -cp ... test.BenchFeedService [requestNb] [maxConcurrentRequests]
+ * </pre>
+ */
+public class BenchFeedService {
+	private static final int USER_NB = 2000;
+	private static final int SUBSCRIPTION_NB = 200;
+	private static final int POST_NB = 50;
+	private static final int PAGE_SIZE = 20;
+	private static final int[] POOL_SIZES = { 4, 16, 64, 256 };
+
+	public static void main(String[] args) throws Exception {
+		int requestNb = args.length > 0 ? Integer.parseInt(args[0]) : 200_000;
+		int maxConcurrentRequests = args.length > 1 ? Integer.parseInt(args[1]) : 10_000;
+		Random rand = new Random(42);
+		List<User> users = createUsers(rand);
+		direct(users, requestNb / 4, rand);
+		System.out.printf("direct newsFeed: %.2f us/page%n%n", direct(users, requestNb, rand));
+		System.out.printf("%-14s %12s %12s %10s %10s %10s%n", "executor", "req/s", "admit p99 us", "p50 us",
+				"p99 us", "retries");
+		Result bestPlatform = null;
+		for (int threadNb : POOL_SIZES) {
+			try (FeedService service = FeedService.withPlatformThreads(threadNb, maxConcurrentRequests)) {
+				Result result = measure("platform-" + threadNb, service, users, requestNb, rand);
+				if (bestPlatform == null || result.throughput > bestPlatform.throughput) {
+					bestPlatform = result;
+				}
+			}
+		}
+		try (FeedService service = FeedService.withThreadPerRequest(maxConcurrentRequests)) {
+			measure("per-request", service, users, requestNb, rand);
+		}
+		Result virtual;
+		try (FeedService service = FeedService.withVirtualThreads(maxConcurrentRequests)) {
+			virtual = measure("virtual", service, users, requestNb, rand);
+		}
+		System.out.printf("%nvirtual / %s: throughput x%.2f, p99 x%.2f%n", bestPlatform.name,
+				virtual.throughput / bestPlatform.throughput, (double) virtual.p99 / Math.max(1, bestPlatform.p99));
+	}
+
+	/**
+	 * Mesure le FeedService spécifié après un premier passage d'échauffement, et
+	 * affiche et renvoie le résultat.
+	 */
+	private static Result measure(String name, FeedService service, List<User> users, int requestNb, Random rand)
+			throws InterruptedException {
+		run(name, service, users, requestNb / 4, rand);
+		Result result = run(name, service, users, requestNb, rand);
+		result.print();
+		return result;
+	}
+
+	/**
+	 * Renvoie le temps moyen, en microsecondes, d'une page lue directement par le
+	 * thread courant.
+	 */
+	private static double direct(List<User> users, int requestNb, Random rand) {
+		long sink = 0;
+		long start = System.nanoTime();
+		for (int i = 0; i < requestNb; i++) {
+			sink += users.get(rand.nextInt(users.size())).newsFeed(PAGE_SIZE, null).getPosts().size();
+		}
+		long elapsed = System.nanoTime() - start;
+		if (sink < 0) {
+			throw new AssertionError();
+		}
+		return elapsed / 1e3 / requestNb;
+	}
+
+	private static List<User> createUsers(Random rand) {
+		List<User> users = new ArrayList<User>(USER_NB);
+		String prefix = "BenchService-" + System.nanoTime() + "-";
+		for (int i = 0; i < USER_NB; i++) {
+			users.add(new User(prefix + i, "pass"));
+		}
+		for (int i = 0; i < USER_NB * POST_NB; i++) {
+			users.get(rand.nextInt(USER_NB)).addPost(new SimplePost("Bench post " + i));
+		}
+		for (User u : users) {
+			while (u.getSubscriptionNb() < SUBSCRIPTION_NB) {
+				User other = users.get(rand.nextInt(USER_NB));
+				if (other != u) {
+					u.addSubscriptionTo(other);
+				}
+			}
+		}
+		return users;
+	}
+
+	private static Result run(String name, FeedService service, List<User> users, int requestNb, Random rand)
+			throws InterruptedException {
+		long[] waits = new long[requestNb];
+		long[] latencies = new long[requestNb];
+		List<CompletableFuture<?>> futures = new ArrayList<CompletableFuture<?>>(requestNb);
+		long retries = 0;
+		long start = System.nanoTime();
+		for (int i = 0; i < requestNb; i++) {
+			int index = i;
+			User reader = users.get(rand.nextInt(users.size()));
+			long sent = System.nanoTime();
+			CompletableFuture<FeedPage> page = service.newsFeed(reader, PAGE_SIZE, null);
+			while (page.isCompletedExceptionally()) {
+				// Demande refusée: attente de la libération d'une place
+				retries++;
+				Thread.sleep(0, 100_000);
+				page = service.newsFeed(reader, PAGE_SIZE, null);
+			}
+			long admitted = System.nanoTime();
+			waits[index] = admitted - sent;
+			futures.add(page.thenRun(() -> latencies[index] = System.nanoTime() - admitted));
+		}
+		CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0])).join();
+		long elapsed = System.nanoTime() - start;
+		Arrays.sort(waits);
+		Arrays.sort(latencies);
+		return new Result(name, requestNb * 1e9 / elapsed, waits[(int) (requestNb * 0.99)] / 1000,
+				latencies[requestNb / 2] / 1000, latencies[(int) (requestNb * 0.99)] / 1000, retries);
+	}
+
+	private static final class Result {
+		private final String name;
+		private final double throughput;
+		private final long admitP99, p50, p99, retries;
+
+		Result(String name, double throughput, long admitP99, long p50, long p99, long retries) {
+			this.name = name;
+			this.throughput = throughput;
+			this.admitP99 = admitP99;
+			this.p50 = p50;
+			this.p99 = p99;
+			this.retries = retries;
+		}
+
+		void print() {
+			System.out.printf("%-14s %12.0f %12d %10d %10d %10d%n", name, throughput, admitP99, p50, p99, retries);
+		}
+	}
+}
@@ -0,0 +1,132 @@
+package test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+import social.model.Post;
+import social.model.SimplePost;
+import social.model.User;
+
+/**
+ * Mesure du débit de likes sur un même Post depuis 1 à threadMax threads.
+ *
+ * Chaque tour crée un Post puis chacun des threads lui ajoute les likes d'une
+ * tranche des User, en lisant régulièrement son nombre de likes comme le ferait
+ * l'affichage d'un Post viral. Le débit de SimplePost est comparé à celui d'un
+ * HashSet protégé par un verrou unique. Usage:
+ *
+ * <pre>
+ * java -cp ... test.BenchLikes [threadMax] [roundNb]
+ * </pre>
+ */
+public class BenchLikes {
+	private static final int USER_NB = 100_000;
+	// Nombre de likes entre deux lectures du nombre de likes
+	private static final int READ_PERIOD = 16;
+	// Dernier nombre de likes lu, afin que les lectures ne soient pas éliminées
+	private static volatile int lastSeen;
+
+	public static void main(String[] args) throws Exception {
+		int threadMax = args.length > 0 ? Integer.parseInt(args[0]) : Runtime.getRuntime().availableProcessors();
+		int roundNb = args.length > 1 ? Integer.parseInt(args[1]) : 20;
+		List<User> users = new ArrayList<User>(USER_NB);
+		String prefix = "BenchLikes-" + System.nanoTime() + "-";
+		for (int i = 0; i < USER_NB; i++) {
+			users.add(new User(prefix + i, "pass"));
+		}
+		System.out.printf("%8s %16s %16s%n", "threads", "SimplePost/s", "locked set/s");
+		for (int threadNb = 1; threadNb <= threadMax; threadNb *= 2) {
+			// Premier passage pour l'échauffement de la JVM
+			run(users, threadNb, roundNb, SimplePostLikes::new);
+			double post = run(users, threadNb, roundNb, SimplePostLikes::new);
+			run(users, threadNb, roundNb, LockedSetLikes::new);
+			double locked = run(users, threadNb, roundNb, LockedSetLikes::new);
+			System.out.printf("%8d %16.0f %16.0f%n", threadNb, post, locked);
+		}
+	}
+
+	/**
+	 * Un ensemble de likes: SimplePost ou HashSet verrouillé.
+	 */
+	private interface Likes extends Consumer<User> {
+		int count();
+	}
+
+	private static final class SimplePostLikes implements Likes {
+		private final Post post = new SimplePost("Viral post");
+
+		@Override
+		public void accept(User u) {
+			post.addLikeFrom(u);
+		}
+
+		@Override
+		public int count() {
+			return post.getLikeNumber();
+		}
+	}
+
+	private static final class LockedSetLikes implements Likes {
+		private final Set<User> likers = Collections.synchronizedSet(new HashSet<User>());
+
+		@Override
+		public void accept(User u) {
+			likers.add(u);
+		}
+
+		@Override
+		public int count() {
+			return likers.size();
+		}
+	}
+
+	/**
+	 * Renvoie le nombre de likes ajoutés par seconde.
+	 */
+	private static double run(List<User> users, int threadNb, int roundNb, Supplier<Likes> factory)
+			throws InterruptedException {
+		long elapsed = 0;
+		long sink = 0;
+		for (int round = 0; round < roundNb; round++) {
+			Likes likes = factory.get();
+			CountDownLatch start = new CountDownLatch(1);
+			List<Thread> threads = new ArrayList<Thread>(threadNb);
+			for (int t = 0; t < threadNb; t++) {
+				int from = USER_NB * t / threadNb;
+				int to = USER_NB * (t + 1) / threadNb;
+				Thread thread = new Thread(() -> {
+					try {
+						start.await();
+					} catch (InterruptedException e) {
+						return;
+					}
+					for (int i = from; i < to; i++) {
+						likes.accept(users.get(i));
+						if (i % READ_PERIOD == 0) {
+							lastSeen = likes.count();
+						}
+					}
+				});
+				thread.start();
+				threads.add(thread);
+			}
+			long begin = System.nanoTime();
+			start.countDown();
+			for (Thread thread : threads) {
+				thread.join();
+			}
+			elapsed += System.nanoTime() - begin;
+			sink += likes.count();
+		}
+		if (sink != (long) USER_NB * roundNb) {
+			throw new AssertionError("likes perdus: " + sink);
+		}
+		return (double) USER_NB * roundNb * 1e9 / elapsed;
+	}
+}
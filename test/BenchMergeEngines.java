@@ -0,0 +1,81 @@
+package test;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import social.model.FusionSortedIterator;
+import social.model.Post;
+import social.model.SimplePost;
+import social.model.User;
+
+/**
+ * Comparaison des deux moteurs de fusion de FusionSortedIterator (tas binaires
+ * et arbres de tournoi) pour différents nombres de User fusionnés.
+ *
+ * Pour chaque nombre k de User, le programme mesure le temps moyen par élément
+ * d'un parcours complet de la fusion vers l'avant puis vers l'arrière, avec
+ * chacun des deux moteurs. Usage:
+ *
+ * <pre>
+ * java -cp ... test.BenchMergeEngines [postNb]
+ * </pre>
+ */
+public class BenchMergeEngines {
+	private static final int[] FAN_IN = { 4, 16, 64, 256, 1024, 5000, 20000, 50000 };
+	private static final int ROUNDS = 5;
+
+	public static void main(String[] args) {
+		int postNb = args.length > 0 ? Integer.parseInt(args[0]) : 500_000;
+		Random rand = new Random(42);
+		System.out.printf("%8s %14s %14s%n", "k", "heap ns/elt", "tourn. ns/elt");
+		for (int k : FAN_IN) {
+			Set<User> users = createUsers(k, postNb, rand);
+			// Préchauffage
+			run(users, Integer.MAX_VALUE);
+			run(users, 0);
+			double heap = Double.MAX_VALUE;
+			double tournament = Double.MAX_VALUE;
+			for (int r = 0; r < ROUNDS; r++) {
+				heap = Math.min(heap, run(users, Integer.MAX_VALUE));
+				tournament = Math.min(tournament, run(users, 0));
+			}
+			System.out.printf("%8d %14.1f %14.1f%n", k, heap, tournament);
+		}
+	}
+
+	private static Set<User> createUsers(int k, int postNb, Random rand) {
+		List<User> users = new ArrayList<User>(k);
+		String prefix = "Bench" + k + "-" + System.nanoTime() + "-";
+		for (int i = 0; i < k; i++) {
+			users.add(new User(prefix + i, "pass"));
+		}
+		for (int i = 0; i < postNb; i++) {
+			users.get(rand.nextInt(k)).addPost(new SimplePost("Bench post " + i));
+		}
+		return new HashSet<User>(users);
+	}
+
+	/**
+	 * Renvoie le temps moyen en nanosecondes par élément d'un parcours complet
+	 * vers l'avant puis vers l'arrière.
+	 */
+	private static double run(Set<User> users, int tournamentThreshold) {
+		long start = System.nanoTime();
+		FusionSortedIterator<Post, User> feed = new FusionSortedIterator<Post, User>(users,
+				Comparator.reverseOrder(), tournamentThreshold);
+		int count = 0;
+		while (feed.hasNext()) {
+			feed.next();
+			count++;
+		}
+		while (feed.hasPrevious()) {
+			feed.previous();
+			count++;
+		}
+		return (double) (System.nanoTime() - start) / count;
+	}
+}
@@ -0,0 +1,269 @@
+package test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+import social.model.FeedCursor;
+import social.model.FeedPage;
+import social.model.FusionSortedIterator;
+import social.model.Post;
+import social.model.SimplePost;
+import social.model.TimelineCursor;
+import social.model.User;
+
+/**
+ * Test de la lecture simultanée de NewsFeed.
+ *
+ * Les NewsFeed de plusieurs lecteurs abonnés aux mêmes auteurs sont parcourus
+ * de manière entrelacée puis depuis plusieurs threads pendant que les auteurs
+ * publient: chaque NewsFeed doit rester trié et complet, sans que les
+ * itérateurs natifs des auteurs ne soient modifiés. Les NewsFeed parcourus page
+ * par page pendant que les auteurs publient ne doivent ni répéter ni omettre de
+ * Post, et les NewsFeed matérialisés des lecteurs en mode "push" s'abonnant
+ * pendant que les auteurs publient doivent contenir chaque Post une fois.
+ */
+public class TestConcurrentFeeds {
+	private static final int THREAD_NB = 8;
+	private static final int AUTHOR_NB = 10;
+	private static final int POST_NB = 50;
+	private static final int ROUND_NB = 50;
+
+	private static List<User> createAuthors(String prefix) {
+		List<User> authors = new ArrayList<User>(AUTHOR_NB);
+		for (int i = 0; i < AUTHOR_NB; i++) {
+			authors.add(new User(prefix + i + "-" + System.nanoTime(), "pass"));
+		}
+		for (int i = 0; i < POST_NB; i++) {
+			for (User author : authors) {
+				author.addPost(new SimplePost("Post " + i));
+			}
+		}
+		return authors;
+	}
+
+	private static User createReader(String name, List<User> authors) {
+		User reader = new User(name + "-" + System.nanoTime(), "pass");
+		for (User author : authors) {
+			reader.addSubscriptionTo(author);
+		}
+		return reader;
+	}
+
+	/**
+	 * Renvoie les Post du NewsFeed spécifié, en vérifiant qu'ils sont triés du
+	 * plus récent au plus ancien et qu'un parcours vers l'arrière les énumère dans
+	 * l'ordre inverse.
+	 */
+	private static List<Post> traverse(FusionSortedIterator<Post, TimelineCursor> feed) {
+		List<Post> posts = new ArrayList<Post>();
+		while (feed.hasNext()) {
+			Post p = feed.next();
+			assertNotNull(p);
+			assertTrue(posts.isEmpty() || posts.get(posts.size() - 1).isAfter(p));
+			posts.add(p);
+		}
+		for (int i = posts.size() - 1; i >= 0; i--) {
+			assertTrue(feed.hasPrevious());
+			assertEquals(posts.get(i), feed.previous());
+		}
+		return posts;
+	}
+
+	@Test
+	public void testInterleavedFeeds() {
+		List<User> authors = createAuthors("Interleaved");
+		User first = createReader("InterleavedReader1", authors);
+		User second = createReader("InterleavedReader2", authors);
+		authors.get(0).next();
+
+		FusionSortedIterator<Post, TimelineCursor> feed1 = first.newsFeed();
+		FusionSortedIterator<Post, TimelineCursor> feed2 = second.newsFeed();
+		List<Post> posts1 = new ArrayList<Post>();
+		List<Post> posts2 = new ArrayList<Post>();
+		while (feed1.hasNext() || feed2.hasNext()) {
+			if (feed1.hasNext()) {
+				posts1.add(feed1.next());
+			}
+			if (feed2.hasNext()) {
+				posts2.add(feed2.next());
+			}
+		}
+		assertEquals(AUTHOR_NB * POST_NB, posts1.size());
+		assertEquals(posts1, posts2);
+		assertEquals(0, authors.get(0).lastIndex());
+		assertEquals(1, authors.get(0).nextIndex());
+	}
+
+	@Test
+	public void testConcurrentFeeds() throws Exception {
+		List<User> authors = createAuthors("Concurrent");
+		List<User> readers = new ArrayList<User>(THREAD_NB);
+		for (int t = 0; t < THREAD_NB; t++) {
+			readers.add(createReader("ConcurrentReader" + t, authors));
+		}
+		CountDownLatch start = new CountDownLatch(1);
+		ExecutorService pool = Executors.newFixedThreadPool(THREAD_NB + 1);
+		try {
+			List<Future<?>> futures = new ArrayList<Future<?>>(THREAD_NB + 1);
+			// Un unique thread publie pendant que les lecteurs parcourent leur NewsFeed
+			futures.add(pool.submit(() -> {
+				start.await();
+				for (int i = 0; i < ROUND_NB; i++) {
+					for (User author : authors) {
+						author.addPost(new SimplePost("Concurrent post " + i));
+					}
+				}
+				return null;
+			}));
+			for (User reader : readers) {
+				futures.add(pool.submit(() -> {
+					start.await();
+					int previousSize = 0;
+					for (int i = 0; i < ROUND_NB; i++) {
+						List<Post> posts = traverse(reader.newsFeed());
+						assertTrue(posts.size() >= previousSize);
+						assertTrue(posts.size() <= AUTHOR_NB * (POST_NB + ROUND_NB));
+						previousSize = posts.size();
+					}
+					return null;
+				}));
+			}
+			start.countDown();
+			for (Future<?> f : futures) {
+				f.get();
+			}
+		} finally {
+			pool.shutdown();
+			assertTrue(pool.awaitTermination(1, TimeUnit.MINUTES));
+		}
+
+		for (User reader : readers) {
+			assertEquals(AUTHOR_NB * (POST_NB + ROUND_NB), traverse(reader.newsFeed()).size());
+		}
+		for (User author : authors) {
+			assertEquals(-1, author.lastIndex());
+			assertEquals(0, author.nextIndex());
+		}
+	}
+
+	@Test
+	public void testConcurrentPushSubscriptions() throws Exception {
+		List<User> authors = createAuthors("Pushed");
+		List<User> readers = new ArrayList<User>(THREAD_NB);
+		for (int t = 0; t < THREAD_NB; t++) {
+			User reader = new User("PushedReader" + t + "-" + System.nanoTime(), "pass");
+			reader.enablePushFeed(2 * AUTHOR_NB * (POST_NB + ROUND_NB));
+			readers.add(reader);
+		}
+		CountDownLatch start = new CountDownLatch(1);
+		ExecutorService pool = Executors.newFixedThreadPool(THREAD_NB + 1);
+		try {
+			List<Future<?>> futures = new ArrayList<Future<?>>(THREAD_NB + 1);
+			// Les lecteurs en mode "push" s'abonnent pendant que les auteurs publient:
+			// un Post publié pendant la recopie ne doit être ni omis ni recopié deux
+			// fois
+			futures.add(pool.submit(() -> {
+				start.await();
+				for (int i = 0; i < ROUND_NB; i++) {
+					for (User author : authors) {
+						author.addPost(new SimplePost("Pushed post " + i));
+					}
+				}
+				return null;
+			}));
+			for (User reader : readers) {
+				futures.add(pool.submit(() -> {
+					start.await();
+					for (User author : authors) {
+						reader.addSubscriptionTo(author);
+					}
+					return null;
+				}));
+			}
+			start.countDown();
+			for (Future<?> f : futures) {
+				f.get();
+			}
+		} finally {
+			pool.shutdown();
+			assertTrue(pool.awaitTermination(1, TimeUnit.MINUTES));
+		}
+
+		List<Post> expected = traverse(createReader("PulledReader", authors).newsFeed());
+		assertEquals(AUTHOR_NB * (POST_NB + ROUND_NB), expected.size());
+		for (User reader : readers) {
+			assertEquals(expected, reader.newsFeed(expected.size() + 1, null).getPosts());
+		}
+	}
+
+	@Test
+	public void testConcurrentPages() throws Exception {
+		List<User> authors = createAuthors("Paged");
+		Set<Post> initialPosts = new HashSet<Post>();
+		for (User author : authors) {
+			initialPosts.addAll(author.getPosts());
+		}
+		List<User> readers = new ArrayList<User>(THREAD_NB);
+		for (int t = 0; t < THREAD_NB; t++) {
+			readers.add(createReader("PagedReader" + t, authors));
+		}
+		CountDownLatch start = new CountDownLatch(1);
+		ExecutorService pool = Executors.newFixedThreadPool(THREAD_NB + 1);
+		try {
+			List<Future<?>> futures = new ArrayList<Future<?>>(THREAD_NB + 1);
+			// Un unique thread publie pendant que les lecteurs parcourent leur NewsFeed
+			// page par page
+			futures.add(pool.submit(() -> {
+				start.await();
+				for (int i = 0; i < ROUND_NB; i++) {
+					for (User author : authors) {
+						author.addPost(new SimplePost("Paged post " + i));
+					}
+				}
+				return null;
+			}));
+			for (User reader : readers) {
+				futures.add(pool.submit(() -> {
+					start.await();
+					for (int i = 0; i < ROUND_NB; i++) {
+						// Les Post publiés pendant le parcours ne doivent ni répéter ni
+						// masquer les Post déjà présents
+						List<Post> posts = new ArrayList<Post>();
+						FeedCursor cursor = null;
+						do {
+							FeedPage page = reader.newsFeed(7, cursor);
+							posts.addAll(page.getPosts());
+							cursor = page.getNextCursor();
+						} while (cursor != null);
+						for (int j = 1; j < posts.size(); j++) {
+							assertTrue(!posts.get(j).isAfter(posts.get(j - 1)));
+						}
+						assertEquals(posts.size(), new HashSet<Post>(posts).size());
+						assertTrue(posts.containsAll(initialPosts));
+					}
+					return null;
+				}));
+			}
+			start.countDown();
+			for (Future<?> f : futures) {
+				f.get();
+			}
+		} finally {
+			pool.shutdown();
+			assertTrue(pool.awaitTermination(1, TimeUnit.MINUTES));
+		}
+	}
+}
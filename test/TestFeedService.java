@@ -0,0 +1,144 @@
+package test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+
+import org.junit.jupiter.api.Test;
+
+import social.model.FeedPage;
+import social.model.FeedService;
+import social.model.SimplePost;
+import social.model.User;
+
+/**
+ * Test de FeedService.
+ *
+ * Les pages servies doivent être identiques à celles obtenues directement par
+ * User.newsFeed(int, FeedCursor), et les demandes au-delà de la limite
+ * d'admission doivent être refusées sans être exécutées.
+ */
+public class TestFeedService {
+	private static final int USER_NB = 20;
+	private static final int REQUEST_NB = 500;
+
+	private static List<User> createUsers(String prefix) {
+		List<User> users = new ArrayList<User>(USER_NB);
+		for (int i = 0; i < USER_NB; i++) {
+			users.add(new User(prefix + i + "-" + System.nanoTime(), "pass"));
+		}
+		for (User u : users) {
+			for (int i = 0; i < 10; i++) {
+				u.addPost(new SimplePost("Service post " + i));
+			}
+			for (int i = 0; i < 5; i++) {
+				User other = users.get(DataProvider.randInt(USER_NB));
+				if (other != u) {
+					u.addSubscriptionTo(other);
+				}
+			}
+		}
+		return users;
+	}
+
+	@Test
+	public void testServedPages() throws Exception {
+		List<User> users = createUsers("Service");
+		try (FeedService service = FeedService.withPlatformThreads(4, REQUEST_NB)) {
+			List<User> readers = new ArrayList<User>(REQUEST_NB);
+			List<Integer> limits = new ArrayList<Integer>(REQUEST_NB);
+			List<CompletableFuture<FeedPage>> pages = new ArrayList<CompletableFuture<FeedPage>>(REQUEST_NB);
+			for (int i = 0; i < REQUEST_NB; i++) {
+				User reader = users.get(DataProvider.randInt(USER_NB));
+				int limit = DataProvider.randInt(1, 30);
+				readers.add(reader);
+				limits.add(limit);
+				pages.add(service.newsFeed(reader, limit, null));
+			}
+			for (int i = 0; i < REQUEST_NB; i++) {
+				assertEquals(readers.get(i).newsFeed(limits.get(i), null).getPosts(), pages.get(i).get().getPosts());
+			}
+			assertEquals(REQUEST_NB, service.getServedCount());
+			assertEquals(0, service.getRejectedCount());
+			assertEquals(0, service.getInFlightCount());
+			assertThrows(IllegalArgumentException.class, () -> service.newsFeed(users.get(0), 0, null));
+			assertThrows(NullPointerException.class, () -> service.newsFeed(null, 1, null));
+		}
+		assertThrows(IllegalArgumentException.class, () -> FeedService.withPlatformThreads(0, REQUEST_NB));
+		assertThrows(IllegalArgumentException.class, () -> FeedService.withPlatformThreads(-1, REQUEST_NB));
+		assertThrows(IllegalArgumentException.class, () -> FeedService.withPlatformThreads(4, 0));
+	}
+
+	@Test
+	public void testAdmissionLimit() throws Exception {
+		User reader = createUsers("Admission").get(0);
+		int max = 10;
+		ExecutorService executor = Executors.newSingleThreadExecutor();
+		CountDownLatch blocked = new CountDownLatch(1);
+		// Occupe l'unique thread: les demandes admises restent en cours
+		executor.execute(() -> {
+			try {
+				blocked.await();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		});
+		try (FeedService service = new FeedService(executor, max)) {
+			List<CompletableFuture<FeedPage>> admitted = new ArrayList<CompletableFuture<FeedPage>>(max);
+			for (int i = 0; i < max; i++) {
+				admitted.add(service.newsFeed(reader, 5, null));
+			}
+			assertEquals(max, service.getInFlightCount());
+			CompletableFuture<FeedPage> refused = service.newsFeed(reader, 5, null);
+			assertTrue(refused.isCompletedExceptionally());
+			ExecutionException e = assertThrows(ExecutionException.class, () -> refused.get());
+			assertInstanceOf(RejectedExecutionException.class, e.getCause());
+			assertEquals(1, service.getRejectedCount());
+			for (CompletableFuture<FeedPage> page : admitted) {
+				assertFalse(page.isDone());
+			}
+
+			blocked.countDown();
+			for (CompletableFuture<FeedPage> page : admitted) {
+				assertEquals(reader.newsFeed(5, null).getPosts(), page.get().getPosts());
+			}
+			assertEquals(max, service.getServedCount());
+			assertEquals(0, service.getInFlightCount());
+		}
+	}
+
+	@Test
+	public void testVirtualThreads() throws Exception {
+		List<User> users = createUsers("Virtual");
+		try (FeedService service = FeedService.withVirtualThreads(REQUEST_NB)) {
+			List<CompletableFuture<FeedPage>> pages = new ArrayList<CompletableFuture<FeedPage>>(REQUEST_NB);
+			for (int i = 0; i < REQUEST_NB; i++) {
+				pages.add(service.newsFeed(users.get(i % USER_NB), 7, null));
+			}
+			for (int i = 0; i < REQUEST_NB; i++) {
+				assertEquals(users.get(i % USER_NB).newsFeed(7, null).getPosts(), pages.get(i).get().getPosts());
+			}
+			assertEquals(REQUEST_NB, service.getServedCount());
+		}
+		assertThrows(IllegalArgumentException.class, () -> FeedService.withVirtualThreads(0));
+	}
+
+	@Test
+	public void testThreadPerRequest() throws Exception {
+		User reader = createUsers("PerRequest").get(0);
+		try (FeedService service = FeedService.withThreadPerRequest(REQUEST_NB)) {
+			assertEquals(reader.newsFeed(7, null).getPosts(), service.newsFeed(reader, 7, null).get().getPosts());
+		}
+	}
+}
@@ -18,6 +18,9 @@ import java.util.List;
 import java.util.ListIterator;
 import java.util.NoSuchElementException;
 import java.util.Set;
+import java.util.Spliterator;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
 import org.junit.jupiter.params.ParameterizedTest;
@@ -25,6 +28,7 @@ import org.junit.jupiter.params.provider.Arguments;
 import org.junit.jupiter.params.provider.MethodSource;
 
 import social.model.FusionSortedIterator;
+import social.model.ParallelFeedBuilder;
 import social.model.ExtendedListIterator;
 import social.model.Post;
 import social.model.User;
@@ -56,6 +60,10 @@ public class TestFusionSortedIterator {
 				.limit(DataProvider.LG_STREAM);
 	}
 
+	public static Stream<Set<User>> setOfUsersProvider() {
+		return Stream.generate(DataProvider::setOfListIterSupplier).limit(DataProvider.LG_STREAM);
+	}
+
 	public static Stream<Arguments> iterAndPostProvider() {
 		return Stream.generate(() -> Arguments.of(DataProvider.fusSortedIterSupplier(), DataProvider.postSupplier()))
 				.limit(DataProvider.LG_STREAM);
@@ -706,4 +714,100 @@ public class TestFusionSortedIterator {
 		// Invariant:
 		assertInvariant(self);
 	}
+
+	/**
+	 * Test des deux moteurs de fusion
+	 *
+	 * Les tas binaires et les arbres de tournoi doivent énumérer les mêmes
+	 * éléments dans le même ordre, dans les deux sens de parcours.
+	 */
+	@ParameterizedTest
+	@MethodSource("setOfUsersProvider")
+	public void testTournamentEngine(Set<User> users) {
+		FusionSortedIterator<Post, User> heap = new FusionSortedIterator<Post, User>(users,
+				Comparator.reverseOrder(), Integer.MAX_VALUE);
+		List<Post> forward = ListIterObserverAdapter.toList(heap);
+		FusionSortedIterator<Post, User> tournament = new FusionSortedIterator<Post, User>(users,
+				Comparator.reverseOrder(), 0);
+		for (Post p : forward) {
+			assertTrue(tournament.hasNext());
+			assertSame(p, tournament.next());
+			assertSame(tournament.lastIterator().getPrevious(), p);
+		}
+		assertFalse(tournament.hasNext());
+		for (int i = forward.size() - 1; i >= 0; i--) {
+			assertTrue(tournament.hasPrevious());
+			assertSame(forward.get(i), tournament.previous());
+			assertEquals(i, tournament.lastIndex());
+		}
+		assertFalse(tournament.hasPrevious());
+	}
+
+	/**
+	 * Test de ParallelFeedBuilder
+	 *
+	 * La construction parallèle des premiers Post doit produire exactement le
+	 * préfixe de la fusion séquentielle, quelle que soit la taille des groupes.
+	 */
+	@ParameterizedTest
+	@MethodSource("setOfUsersProvider")
+	public void testParallelFeedBuilder(Set<User> users) {
+		List<Post> sequential = ListIterObserverAdapter
+				.toList(new FusionSortedIterator<Post, User>(users, Comparator.reverseOrder()));
+		int limit = DataProvider.randInt(0, sequential.size() + 2);
+		ParallelFeedBuilder builder = new ParallelFeedBuilder(ForkJoinPool.commonPool(),
+				DataProvider.randInt(1, 4));
+		assertEquals(sequential.subList(0, Math.min(limit, sequential.size())), builder.firstPosts(users, limit));
+		assertEquals(sequential, new ParallelFeedBuilder().firstPosts(users, Integer.MAX_VALUE));
+		assertThrows(IllegalArgumentException.class, () -> builder.firstPosts(users, -1));
+	}
+
+	/**
+	 * Test method for method stream
+	 *
+	 * Le Stream des éléments restants doit énumérer les mêmes éléments que
+	 * l'itérateur, dans le même ordre, en séquentiel comme en parallèle, sans
+	 * modifier l'état de l'itérateur.
+	 */
+	@ParameterizedTest
+	@MethodSource("fusSortedIterProvider")
+	public void teststream(FusionSortedIterator<Post, User> self) {
+		assumeTrue(self != null);
+		setModel(self);
+		List<Post> all = iterModel.toList();
+		int skipped = DataProvider.randInt(0, all.size() + 1);
+		for (int i = 0; i < skipped; i++) {
+			self.next();
+		}
+		List<Post> expected = all.subList(skipped, all.size());
+
+		Spliterator<Post> split = self.stream().spliterator();
+		assertTrue(split.hasCharacteristics(Spliterator.ORDERED | Spliterator.SORTED | Spliterator.SIZED));
+		assertEquals(expected.size(), split.getExactSizeIfKnown());
+		assertEquals(expected, self.stream().collect(Collectors.toList()));
+		assertEquals(expected, self.stream().parallel().collect(Collectors.toList()));
+		assertEquals(skipped, self.nextIndex());
+
+		// Invariant:
+		assertInvariant(self);
+	}
+
+	/**
+	 * Test method for the comparator of the Spliterator of method stream
+	 *
+	 * Le Spliterator, SORTED, doit renvoyer null pour l'ordre naturel des
+	 * éléments et le Comparator de l'itérateur sinon.
+	 */
+	@ParameterizedTest
+	@MethodSource("setOfUsersProvider")
+	public void teststreamComparator(Set<User> users) {
+		Spliterator<Post> natural = new FusionSortedIterator<Post, User>(users).stream().spliterator();
+		assertTrue(natural.hasCharacteristics(Spliterator.SORTED));
+		assertNull(natural.getComparator());
+
+		Comparator<Post> order = Comparator.reverseOrder();
+		Spliterator<Post> reversed = new FusionSortedIterator<Post, User>(users, order).stream().spliterator();
+		assertTrue(reversed.hasCharacteristics(Spliterator.SORTED));
+		assertSame(order, reversed.getComparator());
+	}
 }
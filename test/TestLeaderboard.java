@@ -0,0 +1,183 @@
+package test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import social.model.Leaderboard;
+import social.model.Post;
+import social.model.SimplePost;
+import social.model.User;
+
+/**
+ * Test de Leaderboard.
+ *
+ * Après des likes ajoutés un à un, par lots ou depuis plusieurs threads, le
+ * classement global et ceux des auteurs doivent contenir les mêmes Post, dans
+ * le même ordre, que le tri de tous les Post par nombre de likes décroissant,
+ * y compris lorsque plusieurs Post ont autant de likes.
+ */
+public class TestLeaderboard {
+	private static final int USER_NB = 300;
+	private static final int AUTHOR_NB = 5;
+	private static final int POST_NB = 40;
+	private static final int K = 10;
+	private static List<User> users;
+
+	@BeforeAll
+	public static void createUsers() {
+		users = new ArrayList<User>(USER_NB);
+		String prefix = "Leaderboard-" + System.nanoTime() + "-";
+		for (int i = 0; i < USER_NB; i++) {
+			users.add(new User(prefix + i, "pass"));
+		}
+	}
+
+	@AfterEach
+	public void disableGlobal() {
+		Leaderboard.disableGlobal();
+	}
+
+	private static List<Post> createPosts(List<User> authors) {
+		List<Post> posts = new ArrayList<Post>();
+		for (int i = 0; i < POST_NB; i++) {
+			for (User author : authors) {
+				posts.add(author.addPost(new SimplePost("Ranked post " + i)));
+			}
+		}
+		return posts;
+	}
+
+	/**
+	 * Renvoie les k Post les plus likés selon l'ordre d'un Leaderboard.
+	 */
+	private static List<Post> expectedTop(List<Post> posts, int k) {
+		List<Post> sorted = new ArrayList<Post>(posts);
+		sorted.removeIf(p -> p.getLikeNumber() == 0);
+		sorted.sort(Comparator.comparingInt(Post::getLikeNumber).reversed()
+				.thenComparing(Comparator.<Post>reverseOrder()));
+		return sorted.subList(0, Math.min(k, sorted.size()));
+	}
+
+	@Test
+	public void testGlobalAndAuthorBoards() {
+		List<User> authors = users.subList(0, AUTHOR_NB);
+		List<Post> posts = createPosts(authors);
+		Leaderboard global = Leaderboard.enableGlobal(K);
+		assertSame(global, Leaderboard.getGlobal());
+		User author = authors.get(0);
+		Leaderboard authorBoard = author.enableLeaderboard(K);
+		assertSame(authorBoard, author.getLeaderboard());
+		assertEquals(0, global.size());
+
+		Random random = new Random(7);
+		for (int i = 0; i < 5000; i++) {
+			// Répartition inégale: quelques Post très likés
+			Post p = posts.get((int) (posts.size() * Math.pow(random.nextDouble(), 3)));
+			p.addLikeFrom(users.get(random.nextInt(USER_NB)));
+		}
+		assertEquals(expectedTop(posts, K), global.top());
+		assertEquals(expectedTop(posts, 3), global.top(3));
+		assertEquals(expectedTop(author.getPosts(), K), authorBoard.top());
+		for (Post p : global.top()) {
+			assertTrue(global.contains(p));
+		}
+		assertEquals(0, global.top(0).size());
+		assertThrows(IllegalArgumentException.class, () -> global.top(-1));
+
+		// Un classement activé après coup est initialisé avec les Post existants
+		User other = authors.get(1);
+		Leaderboard otherBoard = other.enableLeaderboard(K);
+		assertEquals(expectedTop(other.getPosts(), K), otherBoard.top());
+		other.disableLeaderboard();
+		assertNull(other.getLeaderboard());
+	}
+
+	@Test
+	public void testBatchedLikes() {
+		List<Post> posts = createPosts(users.subList(AUTHOR_NB, AUTHOR_NB + 1));
+		Leaderboard global = Leaderboard.enableGlobal(K);
+		Random random = new Random(8);
+		for (Post p : posts) {
+			int likeNb = random.nextInt(USER_NB);
+			p.addLikesFrom(users.subList(0, likeNb));
+		}
+		assertEquals(expectedTop(posts, K), global.top());
+		assertThrows(IllegalArgumentException.class, () -> new Leaderboard(0));
+	}
+
+	@Test
+	public void testTies() {
+		Post older = new SimplePost("Older post");
+		Instant date = older.getDate().plusSeconds(1);
+		Post newer = new SimplePost("Newer post") {
+			@Override
+			public Instant getDate() {
+				return date;
+			}
+		};
+		older.addLikeFrom(users.get(0));
+		newer.addLikeFrom(users.get(0));
+		// À nombre de likes égal, le plus récent est classé le premier et évince
+		// le plus ancien d'un classement plein
+		Leaderboard single = new Leaderboard(1);
+		single.update(older);
+		single.update(newer);
+		assertEquals(List.of(newer), single.top());
+		Leaderboard pair = new Leaderboard(2);
+		pair.update(older);
+		pair.update(newer);
+		assertEquals(List.of(newer, older), pair.top());
+		// Le plus ancien, de nouveau devant, reprend sa place
+		older.addLikeFrom(users.get(1));
+		single.update(older);
+		pair.update(older);
+		assertEquals(List.of(older), single.top());
+		assertEquals(List.of(older, newer), pair.top());
+		assertEquals(1, single.size());
+		assertEquals(2, pair.size());
+	}
+
+	@Test
+	public void testConcurrentLikes() throws Exception {
+		List<Post> posts = createPosts(users.subList(AUTHOR_NB + 1, AUTHOR_NB + 2));
+		Leaderboard global = Leaderboard.enableGlobal(K);
+		Thread[] threads = new Thread[8];
+		for (int t = 0; t < threads.length; t++) {
+			Random random = new Random(t);
+			threads[t] = new Thread(() -> {
+				for (int i = 0; i < 5000; i++) {
+					Post p = posts.get((int) (posts.size() * Math.pow(random.nextDouble(), 2)));
+					p.addLikeFrom(users.get(random.nextInt(USER_NB)));
+				}
+			});
+		}
+		for (Thread thread : threads) {
+			thread.start();
+		}
+		for (Thread thread : threads) {
+			thread.join();
+		}
+		assertEquals(expectedTop(posts, K), global.top());
+
+		// Un classement désactivé n'est plus tenu à jour
+		Leaderboard.disableGlobal();
+		assertNull(Leaderboard.getGlobal());
+		List<Post> top = global.top();
+		Post p = posts.get(posts.size() - 1);
+		p.addLikesFrom(users);
+		assertEquals(top, global.top());
+	}
+}
@@ -0,0 +1,223 @@
+package test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Flow;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+import social.model.LiveFeed;
+import social.model.Post;
+import social.model.SimplePost;
+import social.model.User;
+
+/**
+ * Test de LiveFeed.
+ *
+ * Les Post publiés par un lecteur et par les User auxquels il est abonné
+ * doivent être transmis aux abonnés de son LiveFeed dans l'ordre de
+ * publication, dans la limite de leur demande; un abonné lent ne doit jamais
+ * bloquer la publication, les Post au-delà de son tampon lui étant retirés.
+ */
+public class TestLiveFeed {
+	private static final int POST_NB = 100;
+
+	/**
+	 * Un abonné mémorisant les Post reçus et les suites de Post retirées (dates
+	 * extrêmes et nombre), demandant initialement initialDemand Post.
+	 */
+	private static final class Collector implements LiveFeed.GapSubscriber {
+		private final List<Post> received = new CopyOnWriteArrayList<Post>();
+		private final List<Object[]> gaps = new CopyOnWriteArrayList<Object[]>();
+		// Nombre de Post reçus lors de chaque signalement d'une suite retirée
+		private final List<Integer> gapPositions = new CopyOnWriteArrayList<Integer>();
+		private final CountDownLatch done;
+		private final long initialDemand;
+		private volatile Flow.Subscription subscription;
+		private volatile boolean completed;
+
+		Collector(long initialDemand, int expectedNb) {
+			this.initialDemand = initialDemand;
+			this.done = new CountDownLatch(expectedNb);
+		}
+
+		@Override
+		public void onSubscribe(Flow.Subscription subscription) {
+			this.subscription = subscription;
+			if (initialDemand > 0) {
+				subscription.request(initialDemand);
+			}
+		}
+
+		@Override
+		public void onNext(Post item) {
+			received.add(item);
+			done.countDown();
+		}
+
+		@Override
+		public void onGap(Instant from, Instant to, long droppedNb) {
+			gapPositions.add(received.size());
+			gaps.add(new Object[] { from, to, droppedNb });
+		}
+
+		@Override
+		public void onError(Throwable throwable) {
+		}
+
+		@Override
+		public void onComplete() {
+			completed = true;
+		}
+	}
+
+	private static User newUser(String name) {
+		return new User(name + "-" + System.nanoTime(), "pass");
+	}
+
+	@Test
+	public void testLiveTail() throws Exception {
+		User reader = newUser("LiveReader");
+		User author = newUser("LiveAuthor");
+		User stranger = newUser("LiveStranger");
+		reader.addSubscriptionTo(author);
+		LiveFeed live = reader.liveFeed();
+		assertSame(live, reader.liveFeed());
+		Collector collector = new Collector(Long.MAX_VALUE, POST_NB);
+		live.subscribe(collector);
+
+		List<Post> expected = new ArrayList<Post>(POST_NB);
+		for (int i = 0; i < POST_NB; i++) {
+			User publisher = i % 2 == 0 ? author : reader;
+			expected.add(publisher.addPost(new SimplePost("Live post " + i)));
+			stranger.addPost(new SimplePost("Unrelated post " + i));
+		}
+		assertTrue(collector.done.await(1, TimeUnit.MINUTES));
+		assertEquals(expected, collector.received);
+		assertEquals(POST_NB, live.getPublishedCount());
+		assertEquals(0, live.getDroppedCount());
+
+		reader.closeLiveFeed();
+		assertTrue(live.isClosed());
+		author.addPost(new SimplePost("After close"));
+		assertEquals(POST_NB, live.getPublishedCount());
+	}
+
+	@Test
+	public void testCelebrityAuthor() throws Exception {
+		User reader = newUser("CelebrityReader");
+		User author = newUser("CelebrityAuthor");
+		User follower = newUser("CelebrityFollower");
+		follower.addSubscriptionTo(author);
+		// Abonnement postérieur à l'ouverture du LiveFeed
+		LiveFeed live = reader.liveFeed();
+		reader.addSubscriptionTo(author);
+		Collector collector = new Collector(Long.MAX_VALUE, POST_NB);
+		live.subscribe(collector);
+
+		int threshold = User.getCelebrityThreshold();
+		try {
+			User.setCelebrityThreshold(0);
+			assertTrue(author.isCelebrity());
+			List<Post> expected = new ArrayList<Post>(POST_NB);
+			for (int i = 0; i < POST_NB; i++) {
+				expected.add(author.addPost(new SimplePost("Celebrity post " + i)));
+			}
+			assertTrue(collector.done.await(1, TimeUnit.MINUTES));
+			assertEquals(expected, collector.received);
+
+			reader.removeSubscriptionTo(author);
+			author.addPost(new SimplePost("After unsubscription"));
+			assertEquals(POST_NB, live.getPublishedCount());
+		} finally {
+			User.setCelebrityThreshold(threshold);
+			reader.closeLiveFeed();
+		}
+	}
+
+	@Test
+	public void testSlowSubscriber() throws Exception {
+		User reader = newUser("SlowReader");
+		User author = newUser("SlowAuthor");
+		reader.addSubscriptionTo(author);
+		assertThrows(IllegalArgumentException.class, () -> reader.openLiveFeed(ForkJoinPool.commonPool(), 0));
+		LiveFeed live = reader.openLiveFeed(ForkJoinPool.commonPool(), 4);
+		int capacity = live.getBufferCapacity();
+		Collector slow = new Collector(0, capacity);
+		live.subscribe(slow);
+		while (slow.subscription == null) {
+			Thread.sleep(1);
+		}
+
+		// L'abonné lent ne demande rien: la publication ne doit pas l'attendre
+		List<Post> expected = new ArrayList<Post>(POST_NB);
+		for (int i = 0; i < POST_NB; i++) {
+			expected.add(author.addPost(new SimplePost("Slow post " + i)));
+		}
+		assertTrue(slow.received.isEmpty());
+		assertEquals(POST_NB, live.getPublishedCount());
+		assertEquals(POST_NB - capacity, live.getDroppedCount());
+
+		// Les Post conservés dans son tampon sont les plus anciens
+		slow.subscription.request(Long.MAX_VALUE);
+		assertTrue(slow.done.await(1, TimeUnit.MINUTES));
+		assertEquals(expected.subList(0, capacity), slow.received);
+		assertFalse(slow.completed);
+		reader.closeLiveFeed();
+	}
+
+	@Test
+	public void testGapNotification() throws Exception {
+		User reader = newUser("GapReader");
+		User author = newUser("GapAuthor");
+		reader.addSubscriptionTo(author);
+		LiveFeed live = reader.openLiveFeed(ForkJoinPool.commonPool(), 4);
+		int capacity = live.getBufferCapacity();
+		Collector slow = new Collector(0, capacity + 1);
+		live.subscribe(slow);
+		while (slow.subscription == null) {
+			Thread.sleep(1);
+		}
+
+		List<Post> expected = new ArrayList<Post>(POST_NB);
+		for (int i = 0; i < POST_NB; i++) {
+			expected.add(author.addPost(new SimplePost("Gap post " + i)));
+		}
+		assertTrue(slow.gaps.isEmpty());
+		slow.subscription.request(Long.MAX_VALUE);
+		// La suite retirée est signalée dès la réception du dernier Post du tampon
+		while (slow.gaps.isEmpty()) {
+			Thread.sleep(1);
+		}
+		Post last = author.addPost(new SimplePost("After gap"));
+		assertTrue(slow.done.await(1, TimeUnit.MINUTES));
+		List<Post> received = new ArrayList<Post>(expected.subList(0, capacity));
+		received.add(last);
+		assertEquals(received, slow.received);
+
+		// Une seule suite retirée, signalée entre le tampon et le Post suivant
+		assertEquals(1, slow.gaps.size());
+		assertEquals(List.of(capacity), slow.gapPositions);
+		Instant from = (Instant) slow.gaps.get(0)[0];
+		Instant to = (Instant) slow.gaps.get(0)[1];
+		assertEquals((long) (POST_NB - capacity), slow.gaps.get(0)[2]);
+		assertEquals(expected.get(capacity).getDate(), from);
+		assertEquals(expected.get(POST_NB - 1).getDate(), to);
+		List<Post> recovered = ListIterObserverAdapter.toList(reader.newsFeed(from, to.plusNanos(1)));
+		Collections.reverse(recovered);
+		assertEquals(expected.subList(capacity, POST_NB), recovered);
+		reader.closeLiveFeed();
+	}
+}
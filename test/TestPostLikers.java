@@ -0,0 +1,487 @@
+package test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.ListIterator;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntPredicate;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import social.model.LikeBatch;
+import social.model.Post;
+import social.model.SimplePost;
+import social.model.User;
+
+/**
+ * Test des identifiants des User et de l'ensemble compressé des likers d'un
+ * SimplePost.
+ *
+ * Les likers sont ajoutés selon des répartitions menant aux différentes formes
+ * de conteneur (tableau, intervalles, table de bits): l'ensemble obtenu doit
+ * rester égal à celui d'un HashSet recevant les mêmes likes, et ses itérateurs
+ * doivent énumérer les likers par identifiant croissant dans les deux sens.
+ * Des likes simultanés depuis plusieurs threads ne doivent être ni perdus ni
+ * comptés deux fois, ni masqués aux lectures simultanées. Au-delà du seuil du
+ * mode approché, le nombre de likes doit rester à moins de quelques erreurs
+ * types du nombre exact, les likers mémorisés par le Post doivent cesser de
+ * croître et l'appartenance doit rester exacte, y compris sous likes
+ * simultanés. Les likes ajoutés par lots doivent produire les mêmes ensembles
+ * que les likes ajoutés un à un, et chaque like nouveau doit être indexé parmi
+ * les Post likés de l'User qui l'a émis.
+ */
+public class TestPostLikers {
+	private static final int USER_NB = 10000;
+	private static final int THREAD_NB = 8;
+	private static List<User> users;
+
+	@BeforeAll
+	public static void createUsers() {
+		users = new ArrayList<User>(USER_NB);
+		String prefix = "Liker-" + System.nanoTime() + "-";
+		for (int i = 0; i < USER_NB; i++) {
+			users.add(new User(prefix + i, "pass"));
+		}
+	}
+
+	@Test
+	public void testUserIds() {
+		Set<Integer> ids = new HashSet<Integer>();
+		for (User u : users) {
+			assertTrue(u.getId() >= 0);
+			assertTrue(ids.add(u.getId()));
+			assertSame(u, User.getUser(u.getId()));
+		}
+		// Identifiants attribués par ordre d'inscription, sans trou
+		for (int i = 1; i < USER_NB; i++) {
+			assertEquals(users.get(i - 1).getId() + 1, users.get(i).getId());
+		}
+		assertEquals(null, User.getUser(-1));
+		assertEquals(null, User.getUser(Integer.MAX_VALUE));
+	}
+
+	private static void checkLikes(IntPredicate liked) {
+		Post post = new SimplePost("Liked post");
+		Set<User> expected = new HashSet<User>();
+		for (int i = 0; i < USER_NB; i++) {
+			if (liked.test(i)) {
+				User u = users.get(i);
+				assertEquals(expected.add(u), post.addLikeFrom(u));
+				assertFalse(post.addLikeFrom(u));
+			}
+		}
+		assertEquals(expected.size(), post.getLikeNumber());
+		assertEquals(expected, post.getLikers());
+		assertEquals(post.getLikers(), expected);
+		for (User u : users) {
+			assertEquals(expected.contains(u), post.hasLikeFrom(u));
+			assertEquals(expected.contains(u), post.getLikers().contains(u));
+		}
+		assertFalse(post.hasLikeFrom(null));
+
+		ListIterator<User> iter = post.iterator();
+		int previousId = -1;
+		int n = 0;
+		while (iter.hasNext()) {
+			assertEquals(n, iter.nextIndex());
+			User u = iter.next();
+			assertTrue(u.getId() > previousId);
+			previousId = u.getId();
+			n++;
+		}
+		assertEquals(expected.size(), n);
+		while (iter.hasPrevious()) {
+			User u = iter.previous();
+			n--;
+			assertEquals(n, iter.nextIndex());
+			assertTrue(u.getId() <= previousId);
+			previousId = u.getId();
+		}
+		assertEquals(0, n);
+	}
+
+	@Test
+	public void testSparseLikers() {
+		Random random = new Random(1);
+		checkLikes(i -> random.nextInt(50) == 0);
+	}
+
+	@Test
+	public void testConsecutiveLikers() {
+		checkLikes(i -> i % 1000 < 900);
+	}
+
+	@Test
+	public void testDenseLikers() {
+		checkLikes(i -> i % 2 == 0);
+		Random random = new Random(2);
+		checkLikes(i -> random.nextInt(3) != 0);
+	}
+
+	@Test
+	public void testAllLikers() {
+		checkLikes(i -> true);
+	}
+
+	@Test
+	public void testIteratorIsWeaklyConsistent() {
+		Post post = new SimplePost("Liked post");
+		post.addLikeFrom(users.get(0));
+		post.addLikeFrom(users.get(2));
+		ListIterator<User> iter = post.iterator();
+		assertSame(users.get(0), iter.next());
+		// Un like ajouté au-delà de la position courante est énuméré
+		post.addLikeFrom(users.get(1));
+		assertSame(users.get(1), iter.next());
+		assertSame(users.get(2), iter.next());
+		assertFalse(iter.hasNext());
+
+		// Likes ajoutés pendant l'itération, au-delà du seuil de répartition
+		post.addLikeFrom(users.get(3));
+		for (int i = 4; i < 1000; i++) {
+			assertTrue(iter.hasNext());
+			post.addLikeFrom(users.get(i));
+			assertSame(users.get(i - 1), iter.next());
+		}
+		assertSame(users.get(999), iter.next());
+		assertFalse(iter.hasNext());
+		assertEquals(1000, iter.nextIndex());
+	}
+
+	@Test
+	public void testConcurrentLikes() throws Exception {
+		Post post = new SimplePost("Viral post");
+		Thread[] threads = new Thread[THREAD_NB];
+		for (int t = 0; t < THREAD_NB; t++) {
+			int offset = t;
+			threads[t] = new Thread(() -> {
+				// Chaque thread like tous les User, dans un ordre différent
+				for (int i = 0; i < USER_NB; i++) {
+					post.addLikeFrom(users.get((i * 7 + offset * 1013) % USER_NB));
+				}
+			});
+		}
+		for (Thread thread : threads) {
+			thread.start();
+		}
+		for (Thread thread : threads) {
+			thread.join();
+		}
+		assertEquals(USER_NB, post.getLikeNumber());
+		assertEquals(new HashSet<User>(users), post.getLikers());
+	}
+
+	@Test
+	public void testReadsDuringLikes() throws Exception {
+		Post post = new SimplePost("Post read while liked");
+		int[] liked = new int[] { -1 };
+		List<Throwable> errors = Collections.synchronizedList(new ArrayList<Throwable>());
+		Thread[] readers = new Thread[THREAD_NB];
+		for (int t = 0; t < THREAD_NB; t++) {
+			readers[t] = new Thread(() -> {
+				try {
+					// Un like effectué avant la lecture de liked[0] reste visible,
+					// avant comme après la répartition de l'ensemble des likers
+					int last;
+					do {
+						synchronized (liked) {
+							last = liked[0];
+						}
+						for (int i = 0; i <= last; i += 1 + i / 16) {
+							assertTrue(post.hasLikeFrom(users.get(i)));
+						}
+						if (last + 1 < USER_NB) {
+							// L'absence d'un like ne peut être que transitoire
+							post.hasLikeFrom(users.get(last + 1));
+						}
+					} while (last < USER_NB - 1);
+				} catch (Throwable e) {
+					errors.add(e);
+				}
+			});
+			readers[t].start();
+		}
+		for (int i = 0; i < USER_NB; i++) {
+			post.addLikeFrom(users.get(i));
+			synchronized (liked) {
+				liked[0] = i;
+			}
+		}
+		for (Thread reader : readers) {
+			reader.join();
+		}
+		assertEquals(List.of(), errors);
+		assertEquals(USER_NB, post.getLikers().size());
+	}
+
+	@Test
+	public void testApproximateLikes() {
+		int threshold = 1000;
+		int savedThreshold = SimplePost.getApproximateLikeThreshold();
+		assertThrows(IllegalArgumentException.class, () -> SimplePost.setApproximateLikeThreshold(-1));
+		SimplePost.setApproximateLikeThreshold(threshold);
+		try {
+			Post post = new SimplePost("Mega-viral post");
+			int likerNb = 0;
+			for (int i = 0; i < USER_NB; i += 2) {
+				assertEquals(likerNb > threshold, post.hasApproximateLikes());
+				assertTrue(post.addLikeFrom(users.get(i)));
+				likerNb++;
+				if (likerNb % 500 == 0) {
+					// Erreur bornée du nombre de likes tout au long de la croissance
+					assertEquals(likerNb, post.getLikeNumber(), likerNb * 0.05);
+				}
+			}
+			assertTrue(post.hasApproximateLikes());
+			assertEquals(likerNb, post.getLikeNumber(), likerNb * 0.05);
+			// Les likers mémorisés par le Post cessent de croître au seuil
+			assertEquals(threshold + 1, post.getLikers().size());
+			for (User u : post.getLikers()) {
+				assertTrue(post.hasLikeFrom(u));
+			}
+			// L'appartenance reste exacte
+			for (int i = 0; i < USER_NB; i++) {
+				assertEquals(i % 2 == 0, post.hasLikeFrom(users.get(i)));
+			}
+			// Un like nouveau est reconnu comme tel, un like répété ne l'est pas
+			// et n'est indexé qu'une fois parmi les Post likés de son auteur
+			for (int i = 1; i < USER_NB; i += 2) {
+				int likedNb = users.get(i).getLikedPostNb();
+				assertTrue(post.addLikeFrom(users.get(i)));
+				assertFalse(post.addLikeFrom(users.get(i)));
+				assertFalse(post.addLikeFrom(users.get(i - 1)));
+				assertEquals(likedNb + 1, users.get(i).getLikedPostNb());
+			}
+			assertEquals(threshold + 1, post.getLikers().size());
+			assertEquals(USER_NB, post.getLikeNumber(), USER_NB * 0.05);
+			assertEquals(0, post.addLikesFrom(users));
+			assertTrue(post.hasApproximateLikes());
+		} finally {
+			SimplePost.setApproximateLikeThreshold(savedThreshold);
+		}
+	}
+
+	@Test
+	public void testApproximateLikeError() {
+		int savedThreshold = SimplePost.getApproximateLikeThreshold();
+		SimplePost.setApproximateLikeThreshold(0);
+		try {
+			Random random = new Random(4);
+			int postNb = 20;
+			double errorSum = 0;
+			for (int p = 0; p < postNb; p++) {
+				Post post = new SimplePost("Estimated post " + p);
+				// Likers tirés au hasard, par lots ou un à un
+				int likerNb = 0;
+				List<User> batch = new ArrayList<User>();
+				for (User u : users) {
+					if (random.nextInt(postNb) <= p) {
+						batch.add(u);
+						likerNb++;
+					}
+					if (batch.size() == 100 || (p % 2 == 0 && !batch.isEmpty())) {
+						assertEquals(batch.size(), post.addLikesFrom(batch));
+						batch.clear();
+					}
+				}
+				assertEquals(batch.size(), post.addLikesFrom(batch));
+				assertTrue(post.hasApproximateLikes());
+				assertEquals(1, post.getLikers().size());
+				// Erreur type d'environ 1,6%: chaque estimation reste à moins de 5
+				// erreurs types du nombre exact
+				double error = (post.getLikeNumber() - likerNb) / (double) likerNb;
+				assertEquals(0, error, 0.08);
+				errorSum += Math.abs(error);
+			}
+			// L'erreur moyenne est de l'ordre de l'erreur type
+			assertTrue(errorSum / postNb < 0.03);
+		} finally {
+			SimplePost.setApproximateLikeThreshold(savedThreshold);
+		}
+	}
+
+	@Test
+	public void testConcurrentApproximateLikes() throws Exception {
+		int savedThreshold = SimplePost.getApproximateLikeThreshold();
+		SimplePost.setApproximateLikeThreshold(100);
+		try {
+			Post post = new SimplePost("Viral estimated post");
+			int[] likedNb = new int[USER_NB];
+			for (int i = 0; i < USER_NB; i++) {
+				likedNb[i] = users.get(i).getLikedPostNb();
+			}
+			AtomicInteger added = new AtomicInteger();
+			Thread[] threads = new Thread[THREAD_NB];
+			for (int t = 0; t < THREAD_NB; t++) {
+				int offset = t;
+				threads[t] = new Thread(() -> {
+					// Chaque thread like tous les User, dans un ordre différent
+					for (int i = 0; i < USER_NB; i++) {
+						if (post.addLikeFrom(users.get((i * 7 + offset * 1013) % USER_NB))) {
+							added.incrementAndGet();
+						}
+					}
+				});
+			}
+			for (Thread thread : threads) {
+				thread.start();
+			}
+			for (Thread thread : threads) {
+				thread.join();
+			}
+			// Chaque like n'est accepté et indexé qu'une fois, malgré le passage
+			// simultané en mode approché
+			assertEquals(USER_NB, added.get());
+			for (int i = 0; i < USER_NB; i++) {
+				assertTrue(post.hasLikeFrom(users.get(i)));
+				assertEquals(likedNb[i] + 1, users.get(i).getLikedPostNb());
+			}
+			assertTrue(post.hasApproximateLikes());
+			assertEquals(USER_NB, post.getLikeNumber(), USER_NB * 0.05);
+		} finally {
+			SimplePost.setApproximateLikeThreshold(savedThreshold);
+		}
+	}
+
+	@Test
+	public void testLikeBatch() {
+		Random random = new Random(3);
+		List<Post> posts = new ArrayList<Post>();
+		List<Set<User>> expected = new ArrayList<Set<User>>();
+		for (int i = 0; i < 20; i++) {
+			posts.add(new SimplePost("Batched post " + i));
+			expected.add(new HashSet<User>());
+		}
+		LikeBatch batch = new LikeBatch();
+		for (int round = 0; round < 5; round++) {
+			int expectedAdded = 0;
+			for (int i = 0; i < 5000; i++) {
+				int p = random.nextInt(posts.size());
+				// Likes regroupés sur quelques plages d'User, avec des doublons
+				User u = users.get((p * 397 + random.nextInt(2000)) % USER_NB);
+				batch.add(posts.get(p), u);
+				if (expected.get(p).add(u)) {
+					expectedAdded++;
+				}
+			}
+			assertEquals(5000, batch.size());
+			assertTrue(batch.getPostNb() <= posts.size());
+			assertEquals(expectedAdded, batch.apply());
+			assertEquals(0, batch.size());
+			assertEquals(0, batch.getPostNb());
+			for (int p = 0; p < posts.size(); p++) {
+				assertEquals(expected.get(p).size(), posts.get(p).getLikeNumber());
+				assertEquals(expected.get(p), posts.get(p).getLikers());
+			}
+		}
+		assertThrows(NullPointerException.class, () -> batch.add(null, users.get(0)));
+		assertThrows(NullPointerException.class, () -> batch.add(posts.get(0), null));
+		assertThrows(NullPointerException.class,
+				() -> posts.get(0).addLikesFrom(Arrays.asList(users.get(0), null)));
+		Map<Post, List<User>> likes = new HashMap<Post, List<User>>();
+		int expectedAdded = 0;
+		for (int p = 0; p < 2; p++) {
+			likes.put(posts.get(p), users.subList(0, 100));
+			for (User u : users.subList(0, 100)) {
+				if (expected.get(p).add(u)) {
+					expectedAdded++;
+				}
+			}
+		}
+		assertEquals(expectedAdded, LikeBatch.apply(likes));
+		assertEquals(0, LikeBatch.apply(likes));
+		for (int p = 0; p < 2; p++) {
+			assertEquals(expected.get(p), posts.get(p).getLikers());
+		}
+	}
+
+	@Test
+	public void testLikedPosts() {
+		User author = new User("LikedAuthor-" + System.nanoTime(), "pass");
+		User reader = users.get(USER_NB - 1);
+		User other = users.get(USER_NB - 2);
+		int initialNb = reader.getLikedPostNb();
+		List<Post> posts = new ArrayList<Post>();
+		for (int i = 0; i < 50; i++) {
+			posts.add(author.addPost(new SimplePost("Post " + i)));
+		}
+		// Likes dans le désordre, un à un et par lots
+		List<Post> expected = new ArrayList<Post>();
+		LikeBatch batch = new LikeBatch();
+		for (int i = posts.size() - 1; i >= 0; i--) {
+			Post p = posts.get((i * 7) % posts.size());
+			if (i % 3 == 0) {
+				p.addLikeFrom(reader);
+				assertFalse(p.addLikeFrom(reader));
+				expected.add(p);
+			} else if (i % 3 == 1) {
+				batch.add(p, reader);
+				batch.add(p, reader);
+				batch.add(p, other);
+				expected.add(p);
+			}
+		}
+		batch.apply();
+		assertEquals(initialNb + expected.size(), reader.getLikedPostNb());
+		expected.sort(Collections.reverseOrder());
+
+		// Parcours par pages du plus récent au plus ancien
+		List<Post> liked = new ArrayList<Post>();
+		List<Post> page = reader.getLikedPosts(7, null);
+		while (!page.isEmpty() && liked.size() < expected.size()) {
+			assertTrue(page.size() <= 7);
+			liked.addAll(page);
+			page = reader.getLikedPosts(7, page.get(page.size() - 1));
+		}
+		assertEquals(expected, liked.subList(0, expected.size()));
+		for (Post p : liked) {
+			assertTrue(p.hasLikeFrom(reader));
+		}
+		// Post de même date: aucun n'est omis ni répété à la limite de deux pages
+		Instant date = Instant.now().plusSeconds(3600);
+		Set<Post> sameDate = new HashSet<Post>();
+		for (int i = 0; i < 10; i++) {
+			Post p = new SimplePost("Same date " + i) {
+				@Override
+				public Instant getDate() {
+					return date;
+				}
+			};
+			p.addLikeFrom(reader);
+			sameDate.add(p);
+		}
+		Set<Post> paged = new HashSet<Post>();
+		page = reader.getLikedPosts(5, null);
+		for (int i = 0; i < 2; i++) {
+			assertEquals(5, page.size());
+			for (Post p : page) {
+				assertTrue(paged.add(p));
+			}
+			page = reader.getLikedPosts(5, page.get(page.size() - 1));
+		}
+		assertEquals(sameDate, paged);
+		for (Post p : page) {
+			assertFalse(sameDate.contains(p));
+		}
+
+		assertThrows(IllegalArgumentException.class, () -> reader.getLikedPosts(0, null));
+		assertThrows(UnsupportedOperationException.class, () -> reader.getLikedPosts(1, null).clear());
+		assertTrue(author.getLikedPosts(10, null).isEmpty());
+		assertEquals(0, author.getLikedPostNb());
+	}
+}
@@ -2,6 +2,7 @@ package test;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertNull;
@@ -22,15 +23,25 @@ import java.util.List;
 import java.util.ListIterator;
 import java.util.NoSuchElementException;
 import java.util.Set;
+import java.util.Spliterator;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
+import org.junit.jupiter.api.Test;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.Arguments;
 import org.junit.jupiter.params.provider.MethodSource;
 
+import social.model.FeedCursor;
+import social.model.FeedMetrics;
+import social.model.FeedPage;
+import social.model.FeedPath;
 import social.model.FusionSortedIterator;
+import social.model.ParallelFeedBuilder;
 import social.model.Post;
 import social.model.SimplePost;
+import social.model.TimelineCursor;
 import social.model.User;
 import static test.DataProvider.getRandomElt;
 
@@ -879,6 +890,50 @@ public class TestUser {
 		assertInvariant(self);
 	}
 
+	/**
+	 * Test method for method postStream
+	 *
+	 * Renvoie un Stream des Post de cet utilisateur, du plus récent au plus ancien,
+	 * dont le Spliterator est trié, de taille connue et découpable.
+	 */
+	@ParameterizedTest
+	@MethodSource("userProvider")
+	public void testpostStream(User self) {
+		assumeTrue(self != null);
+
+		// Invariant:
+		assertInvariant(self);
+
+		// Exécution:
+		Stream<Post> result = self.postStream();
+
+		// Post-conditions:
+		// @ensures \result != null;
+		assertNotNull(result);
+		Spliterator<Post> split = result.spliterator();
+		assertTrue(split.hasCharacteristics(Spliterator.ORDERED | Spliterator.SORTED | Spliterator.NONNULL
+				| Spliterator.SIZED | Spliterator.SUBSIZED | Spliterator.IMMUTABLE));
+		assertEquals(self.getPostNb(), split.getExactSizeIfKnown());
+		// @ensures \result.toList().equals(getPosts());
+		assertEquals(self.getPosts(), self.postStream().collect(Collectors.toList()));
+		assertEquals(self.getPosts(), self.postStream().parallel().collect(Collectors.toList()));
+		assertEquals(self.getPostNb(), self.postStream().parallel().filter(p -> p.getDate() != null).count());
+		if (self.getPostNb() >= 2) {
+			// La découpe sépare les Post les plus récents des plus anciens
+			Spliterator<Post> suffix = self.postStream().spliterator();
+			Spliterator<Post> prefix = suffix.trySplit();
+			assertNotNull(prefix);
+			assertEquals(self.getPostNb(), prefix.estimateSize() + suffix.estimateSize());
+			List<Post> posts = new LinkedList<Post>();
+			prefix.forEachRemaining(posts::add);
+			suffix.forEachRemaining(posts::add);
+			assertEquals(self.getPosts(), posts);
+		}
+
+		// Invariant:
+		assertInvariant(self);
+	}
+
 	/**
 	 * Test method for method addPost
 	 *
@@ -986,11 +1041,10 @@ public class TestUser {
 	 *
 	 * Renvoie un NewsFeed de cet utilisateur. Ce NewsFeed interdit toute
 	 * modification, il est obtenu en fusionnant les listes de Post de cet
-	 * utilisateur et des utilisateurs auxquels il est abonné, il utilise les
-	 * itérateurs natifs des User. L'appel de cette méthode réinitialise les
-	 * itérateurs natifs de ce User ainsi que ceux des User auxquels il est abonné,
-	 * comme le ferait un appel à startIteration(). Ce NewsFeed énumère les Post par
-	 * ordre de date du plus récent au plus ancien.
+	 * utilisateur et des utilisateurs auxquels il est abonné, il utilise un
+	 * TimelineCursor indépendant par User fusionné: les itérateurs natifs des User
+	 * ne sont ni utilisés ni modifiés. Ce NewsFeed énumère les Post par ordre de
+	 * date du plus récent au plus ancien.
 	 */
 	@ParameterizedTest
 	@MethodSource("userProvider")
@@ -1003,26 +1057,37 @@ public class TestUser {
 		// Pré-conditions:
 
 		// Oldies:
+		int oldLastIndex = self.lastIndex();
+		int oldNextIndex = self.nextIndex();
+		int oldPreviousIndex = self.previousIndex();
+		List<int[]> oldSubIndexes = new LinkedList<int[]>();
+		for (User u : self.getSubscriptions()) {
+			oldSubIndexes.add(new int[] { u.lastIndex(), u.nextIndex(), u.previousIndex() });
+		}
 
 		// Exécution:
-		FusionSortedIterator<Post, User> result = self.newsFeed();
+		FusionSortedIterator<Post, TimelineCursor> result = self.newsFeed();
 
 		// Post-conditions:
 		// @ensures \result != null;
 		assertNotNull(result);
-		// @ensures lastIndex() == -1 && nextIndex() == 0 && previousIndex() == -1;
-		assertEquals(-1, self.lastIndex());
-		assertEquals(0, self.nextIndex());
-		assertEquals(-1, self.previousIndex());
-		// @ensures (\forall User u; hasSubscriptionTo(u); u.lastIndex() == -1 &&
-		// u.nextIndex() == 0 && u.previousIndex() == -1);
-		for (User u : self.getSubscriptions()) {
-			assertEquals(-1, u.lastIndex());
-			assertEquals(0, u.nextIndex());
-			assertEquals(-1, u.previousIndex());
-		}
 		// @ensures \resmodel = new ListIterObserverAdapter(\result);
 		ListIterObserver<Post> resmodel = new ListIterObserverAdapter<Post>(result);
+		// @ensures lastIndex() == \old(lastIndex()) && nextIndex() ==
+		// \old(nextIndex()) && previousIndex() == \old(previousIndex());
+		assertEquals(oldLastIndex, self.lastIndex());
+		assertEquals(oldNextIndex, self.nextIndex());
+		assertEquals(oldPreviousIndex, self.previousIndex());
+		// @ensures (\forall User u; hasSubscriptionTo(u); u.lastIndex() ==
+		// \old(u.lastIndex()) && u.nextIndex() == \old(u.nextIndex()) &&
+		// u.previousIndex() == \old(u.previousIndex()));
+		Iterator<int[]> oldIter = oldSubIndexes.iterator();
+		for (User u : self.getSubscriptions()) {
+			int[] old = oldIter.next();
+			assertEquals(old[0], u.lastIndex());
+			assertEquals(old[1], u.nextIndex());
+			assertEquals(old[2], u.previousIndex());
+		}
 		// @ensures !\resmodel.contains(null);
 		assertFalse(resmodel.contains​(null));
 		// @ensures \resmodel.containsAll(getPosts());
@@ -1047,6 +1112,427 @@ public class TestUser {
 		assertInvariant(self);
 	}
 
+	/**
+	 * Test method for method newsFeed(Instant, Instant)
+	 *
+	 * Renvoie le NewsFeed de cet utilisateur restreint aux Post dont la date est
+	 * comprise entre from (incluse) et to (exclue): il doit être égal au NewsFeed
+	 * complet filtré par ces dates.
+	 */
+	@ParameterizedTest
+	@MethodSource("userProvider")
+	public void testnewsFeedWindow(User self) {
+		assumeTrue(self != null);
+
+		// Invariant:
+		assertInvariant(self);
+
+		// Pré-conditions:
+		// @requires from != null && to != null;
+		assertThrows(NullPointerException.class, () -> self.newsFeed(null, Instant.now()));
+		assertThrows(NullPointerException.class, () -> self.newsFeed(Instant.now(), null));
+		// @requires !from.isAfter(to);
+		assertThrows(IllegalArgumentException.class, () -> self.newsFeed(Instant.now(), Instant.MIN));
+
+		List<Post> all = ListIterObserverAdapter.toList(self.newsFeed());
+		Instant from, to;
+		if (all.isEmpty()) {
+			from = Instant.MIN;
+			to = Instant.MAX;
+		} else {
+			// Bornes choisies parmi les dates des Post pour tester leur inclusion
+			Instant d1 = all.get(DataProvider.randInt(0, all.size())).getDate();
+			Instant d2 = all.get(DataProvider.randInt(0, all.size())).getDate();
+			from = d1.isBefore(d2) ? d1 : d2;
+			to = d1.isBefore(d2) ? d2 : d1;
+		}
+
+		// Exécution:
+		FusionSortedIterator<Post, TimelineCursor> result = self.newsFeed(from, to);
+
+		// Post-conditions:
+		// @ensures \result != null;
+		assertNotNull(result);
+		// @ensures \resmodel.equals(the Post p of newsFeed() such that
+		// !p.getDate().isBefore(from) && p.getDate().isBefore(to));
+		List<Post> expected = new LinkedList<Post>();
+		for (Post p : all) {
+			if (!p.getDate().isBefore(from) && p.getDate().isBefore(to)) {
+				expected.add(p);
+			}
+		}
+		List<Post> window = ListIterObserverAdapter.toList(result);
+		assertEquals(expected, window);
+		// Le parcours vers l'arrière énumère la fenêtre dans l'ordre inverse
+		Collections.reverse(expected);
+		while (result.hasNext()) {
+			result.next();
+		}
+		List<Post> backward = new LinkedList<Post>();
+		while (result.hasPrevious()) {
+			backward.add(result.previous());
+		}
+		assertEquals(expected, backward);
+
+		// Invariant:
+		assertInvariant(self);
+	}
+
+	/**
+	 * Test method for method newsFeed(int, FeedCursor)
+	 *
+	 * Renvoie une page du NewsFeed de cet utilisateur: au plus limit Post, du plus
+	 * récent au plus ancien, énumérés à partir de la position spécifiée. La
+	 * concaténation des pages successives doit être égale au NewsFeed complet.
+	 */
+	@ParameterizedTest
+	@MethodSource("userProvider")
+	public void testnewsFeedPage(User self) {
+		assumeTrue(self != null);
+
+		// Invariant:
+		assertInvariant(self);
+
+		// Pré-conditions:
+		// @requires limit > 0;
+		assertThrows(IllegalArgumentException.class, () -> self.newsFeed(0, null));
+
+		List<Post> expected = ListIterObserverAdapter.toList(self.newsFeed());
+		int limit = DataProvider.randInt(1, 50);
+
+		// Save state for purity check:
+		saveState(self);
+
+		// Exécution:
+		List<Post> pages = new LinkedList<Post>();
+		FeedCursor cursor = null;
+		FeedPage page;
+		do {
+			page = self.newsFeed(limit, cursor);
+			// @ensures \result.getPosts().size() <= limit;
+			assertTrue(page.getPosts().size() <= limit);
+			// @ensures \result.hasMore() ==> \result.getPosts().size() == limit;
+			if (page.hasMore()) {
+				assertEquals(limit, page.getPosts().size());
+			}
+			pages.addAll(page.getPosts());
+			cursor = page.getNextCursor();
+		} while (page.hasMore());
+
+		// Post-conditions:
+		assertEquals(expected, pages);
+
+		// Assert purity:
+		assertPurity(self);
+
+		// Invariant:
+		assertInvariant(self);
+	}
+
+	/**
+	 * Test method for the cache of method newsFeed(int, FeedCursor)
+	 *
+	 * Une page redemandée sans qu'aucun des User fusionnés n'ait publié ni que les
+	 * abonnements n'aient changé est renvoyée depuis le cache; dans le cas
+	 * contraire elle est reconstruite et reflète les modifications.
+	 */
+	@ParameterizedTest
+	@MethodSource("userProvider")
+	public void testnewsFeedCache(User self) {
+		assumeTrue(self != null);
+		assumeTrue(!self.isPushFeed());
+
+		// Invariant:
+		assertInvariant(self);
+
+		int limit = DataProvider.randInt(1, 20);
+		FeedPage first = self.newsFeed(limit, null);
+		long hits = FeedMetrics.getCacheHitCount();
+		assertSame(first, self.newsFeed(limit, null));
+		assertTrue(FeedMetrics.getCacheHitCount() > hits);
+		FeedPage second = null;
+		if (first.hasMore()) {
+			second = self.newsFeed(limit, first.getNextCursor());
+			assertSame(second, self.newsFeed(limit, first.getNextCursor()));
+		}
+
+		// Une publication invalide la première page, pas les suivantes
+		User author = self.getSubscriptions().isEmpty() ? self : getRandomElt(self.getSubscriptions());
+		Post p = author.addPost(new SimplePost("Cache test"));
+		FeedPage updated = self.newsFeed(limit, null);
+		assertNotSame(first, updated);
+		assertSame(p, updated.getPosts().get(0));
+		if (second != null) {
+			assertSame(second, self.newsFeed(limit, first.getNextCursor()));
+		}
+		// La page reconstruite est de nouveau en cache, et de nouveau invalidée
+		// par la publication suivante
+		assertSame(updated, self.newsFeed(limit, null));
+		Post q = new SimplePost("Cache test 2");
+		while (!q.isAfter(p)) {
+			q = new SimplePost("Cache test 2");
+		}
+		author.addPost(q);
+		updated = self.newsFeed(limit, null);
+		assertSame(q, updated.getPosts().get(0));
+
+		// Un (dés)abonnement invalide toutes les pages
+		User other = DataProvider.userSupplier();
+		if (other != self && other != author) {
+			FeedPage before = self.newsFeed(limit, null);
+			boolean subscribed = self.hasSubscriptionTo(other);
+			if (subscribed) {
+				self.removeSubscriptionTo(other);
+			} else {
+				self.addSubscriptionTo(other);
+			}
+			FeedPage after = self.newsFeed(limit, null);
+			assertNotSame(before, after);
+			List<Post> expected = ListIterObserverAdapter.toList(self.newsFeed());
+			assertEquals(expected.subList(0, Math.min(limit, expected.size())), after.getPosts());
+			if (subscribed) {
+				self.addSubscriptionTo(other);
+			} else {
+				self.removeSubscriptionTo(other);
+			}
+		}
+
+		// Invariant:
+		assertInvariant(self);
+	}
+
+	/**
+	 * Test method for methods enablePushFeed and disablePushFeed
+	 *
+	 * En mode "push", les pages du NewsFeed sont lues dans un NewsFeed matérialisé
+	 * qui doit rester identique aux capacity premiers Post du NewsFeed fusionné
+	 * au moment de la lecture, malgré les publications, abonnements et
+	 * désabonnements.
+	 */
+	@ParameterizedTest
+	@MethodSource("userProvider")
+	public void testPushFeed(User self) {
+		assumeTrue(self != null);
+
+		// Invariant:
+		assertInvariant(self);
+
+		// Pré-conditions:
+		// @requires capacity > 0;
+		assertThrows(IllegalArgumentException.class, () -> self.enablePushFeed(0));
+
+		int capacity = DataProvider.randInt(1, 100);
+		self.enablePushFeed(capacity);
+		// @ensures isPushFeed();
+		assertTrue(self.isPushFeed());
+		assertPushFeed(self, capacity);
+
+		User other = DataProvider.userSupplier();
+		if (other != self) {
+			if (self.hasSubscriptionTo(other)) {
+				self.removeSubscriptionTo(other);
+				assertPushFeed(self, capacity);
+				self.addSubscriptionTo(other);
+			} else {
+				self.addSubscriptionTo(other);
+				assertPushFeed(self, capacity);
+				self.removeSubscriptionTo(other);
+			}
+			assertPushFeed(self, capacity);
+		}
+		if (!self.getSubscriptions().isEmpty()) {
+			User author = getRandomElt(self.getSubscriptions());
+			Post p = author.addPost(new SimplePost("Push test"));
+			assertSame(p, self.newsFeed(1, null).getPosts().get(0));
+			assertPushFeed(self, capacity);
+		}
+
+		self.disablePushFeed();
+		// @ensures !isPushFeed();
+		assertFalse(self.isPushFeed());
+
+		// Invariant:
+		assertInvariant(self);
+	}
+
+	private void assertPushFeed(User self, int capacity) {
+		List<Post> expected = ListIterObserverAdapter.toList(self.newsFeed());
+		expected = expected.subList(0, Math.min(capacity, expected.size()));
+		List<Post> pushed = new LinkedList<Post>();
+		FeedPage page = self.newsFeed(DataProvider.randInt(1, capacity + 1), null);
+		pushed.addAll(page.getPosts());
+		while (page.hasMore()) {
+			page = self.newsFeed(DataProvider.randInt(1, capacity + 1), page.getNextCursor());
+			pushed.addAll(page.getPosts());
+		}
+		assertEquals(expected, pushed);
+	}
+
+	/**
+	 * Test method for the hybrid push/pull NewsFeed
+	 *
+	 * Les Post des célébrités auxquelles est abonné un User en mode "push" sont
+	 * fusionnés au moment de la lecture: les pages doivent rester un préfixe du
+	 * NewsFeed fusionné, d'au moins capacity Post, et redevenir identiques aux
+	 * capacity premiers Post lorsque le seuil des célébrités est rétabli.
+	 */
+	@ParameterizedTest
+	@MethodSource("userProvider")
+	public void testHybridFeed(User self) {
+		assumeTrue(self != null);
+
+		// Invariant:
+		assertInvariant(self);
+
+		// Pré-conditions:
+		// @requires threshold >= 0;
+		assertThrows(IllegalArgumentException.class, () -> User.setCelebrityThreshold(-1));
+
+		int threshold = User.getCelebrityThreshold();
+		int capacity = DataProvider.randInt(1, 100);
+		try {
+			self.enablePushFeed(capacity);
+			int maxFollowerNb = 0;
+			for (User u : self.getSubscriptions()) {
+				maxFollowerNb = Math.max(maxFollowerNb, u.getFollowerNb());
+			}
+			User.setCelebrityThreshold(DataProvider.randInt(0, maxFollowerNb + 1));
+			// @ensures \result <==> getFollowerNb() > getCelebrityThreshold();
+			boolean hybrid = false;
+			for (User u : self.getSubscriptions()) {
+				assertEquals(u.getFollowerNb() > User.getCelebrityThreshold(), u.isCelebrity());
+				hybrid = hybrid || u.isCelebrity();
+			}
+			List<Post> expected = ListIterObserverAdapter.toList(self.newsFeed());
+			long before = FeedMetrics.getCount(hybrid ? FeedPath.HYBRID : FeedPath.PUSH);
+			List<Post> read = new LinkedList<Post>();
+			int pageNb = 0;
+			FeedCursor cursor = null;
+			do {
+				FeedPage page = self.newsFeed(DataProvider.randInt(1, capacity + 1), cursor);
+				assertEquals(hybrid ? FeedPath.HYBRID : FeedPath.PUSH, page.getPath());
+				read.addAll(page.getPosts());
+				cursor = page.getNextCursor();
+				pageNb++;
+			} while (cursor != null);
+			assertTrue(read.size() >= Math.min(capacity, expected.size()));
+			assertEquals(expected.subList(0, read.size()), read);
+			assertTrue(FeedMetrics.getCount(hybrid ? FeedPath.HYBRID : FeedPath.PUSH) >= before + pageNb);
+
+			User.setCelebrityThreshold(threshold);
+			assertEquals(threshold, User.getCelebrityThreshold());
+			assertPushFeed(self, capacity);
+		} finally {
+			User.setCelebrityThreshold(threshold);
+			self.disablePushFeed();
+		}
+		assertEquals(FeedPath.PULL, self.newsFeed(1, null).getPath());
+
+		// Invariant:
+		assertInvariant(self);
+	}
+
+	/**
+	 * Test method for the pages of newsFeed(int, FeedCursor) at equal dates
+	 *
+	 * Deux auteurs publiant le même Post, donc à la même date, celui-ci doit être
+	 * énuméré une fois par auteur même lorsque la limite entre deux pages tombe
+	 * entre eux, en mode "pull", "push" et hybride.
+	 */
+	@Test
+	public void testnewsFeedPageSameDate() {
+		String prefix = "SameDate-" + System.nanoTime() + "-";
+		User reader = new User(prefix + "reader", "pass");
+		User first = new User(prefix + "first", "pass");
+		User second = new User(prefix + "second", "pass");
+		reader.addSubscriptionTo(first);
+		reader.addSubscriptionTo(second);
+		Post older = first.addPost(new SimplePost("Older"));
+		Post shared = new SimplePost("Shared");
+		while (!shared.isAfter(older)) {
+			shared = new SimplePost("Shared");
+		}
+		first.addPost(shared);
+		second.addPost(shared);
+		List<Post> expected = List.of(shared, shared, older);
+
+		assertEquals(expected, readPages(reader, 1, FeedPath.PULL));
+		int threshold = User.getCelebrityThreshold();
+		try {
+			reader.enablePushFeed(10);
+			assertEquals(expected, readPages(reader, 1, FeedPath.PUSH));
+			// first devient une célébrité, dont les Post sont fusionnés à la lecture
+			new User(prefix + "fan", "pass").addSubscriptionTo(first);
+			User.setCelebrityThreshold(1);
+			assertEquals(expected, readPages(reader, 1, FeedPath.HYBRID));
+			User.setCelebrityThreshold(0);
+			assertEquals(expected, readPages(reader, 1, FeedPath.HYBRID));
+		} finally {
+			User.setCelebrityThreshold(threshold);
+			reader.disablePushFeed();
+		}
+	}
+
+	/**
+	 * Test method for ParallelFeedBuilder.newsFeed(User, int) at equal dates
+	 *
+	 * Des Post distincts de même date publiés par des auteurs différents doivent
+	 * être énumérés dans l'ordre des identifiants de leurs auteurs, comme dans
+	 * newsFeed() et les pages de newsFeed(int, FeedCursor), quelle que soit la
+	 * taille des groupes fusionnés par chaque tâche.
+	 */
+	@Test
+	public void testParallelnewsFeedSameDate() {
+		String prefix = "ParallelSameDate-" + System.nanoTime() + "-";
+		User reader = new User(prefix + "reader", "pass");
+		Post older = reader.addPost(new SimplePost("Older"));
+		Instant date = older.getDate().plusSeconds(1);
+		List<User> authors = new LinkedList<User>();
+		authors.add(reader);
+		for (int i = 0; i < 12; i++) {
+			User author = new User(prefix + i, "pass");
+			reader.addSubscriptionTo(author);
+			authors.add(author);
+		}
+		for (User author : authors) {
+			author.addPost(new SimplePost("Same date") {
+				@Override
+				public Instant getDate() {
+					return date;
+				}
+			});
+		}
+		authors.sort(Comparator.comparingInt(User::getId));
+		List<Post> expected = new LinkedList<Post>();
+		for (User author : authors) {
+			expected.add(author.getPosts().get(0));
+		}
+		expected.add(older);
+		assertEquals(expected, ListIterObserverAdapter.toList(reader.newsFeed()));
+
+		for (int groupSize = 1; groupSize <= 4; groupSize++) {
+			ParallelFeedBuilder builder = new ParallelFeedBuilder(ForkJoinPool.commonPool(), groupSize);
+			for (int limit = 1; limit <= expected.size() + 1; limit++) {
+				List<Post> posts = builder.newsFeed(reader, limit);
+				assertEquals(expected.subList(0, Math.min(limit, expected.size())), posts);
+				assertEquals(reader.newsFeed(limit, null).getPosts(), posts);
+			}
+			assertTrue(builder.newsFeed(reader, 0).isEmpty());
+		}
+	}
+
+	private static List<Post> readPages(User reader, int limit, FeedPath path) {
+		List<Post> read = new LinkedList<Post>();
+		FeedCursor cursor = null;
+		do {
+			FeedPage page = reader.newsFeed(limit, cursor);
+			assertEquals(path, page.getPath());
+			read.addAll(page.getPosts());
+			cursor = page.getNextCursor();
+		} while (cursor != null);
+		return read;
+	}
+
 	/**
 	 * Test method for method iterator
 	 *
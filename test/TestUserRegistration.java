@@ -0,0 +1,91 @@
+package test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+import social.model.User;
+
+/**
+ * Test de l'inscription concurrente des User.
+ *
+ * Plusieurs threads tentent simultanément de créer des User portant les mêmes
+ * noms: pour chaque nom, exactement une création doit aboutir et toutes les
+ * autres doivent échouer avec une IllegalArgumentException, et chaque User
+ * créé doit être retrouvé par son identifiant.
+ */
+public class TestUserRegistration {
+	private static final int THREAD_NB = 8;
+	private static final int NAME_NB = 200;
+
+	@Test
+	public void testConcurrentRegistration() throws Exception {
+		List<String> names = new ArrayList<String>(NAME_NB);
+		for (int i = 0; i < NAME_NB; i++) {
+			names.add("Stress" + i + "-" + System.nanoTime());
+		}
+		int oldUserNb = User.getAllUser().size();
+		ConcurrentMap<String, User> created = new ConcurrentHashMap<String, User>();
+		AtomicInteger successNb = new AtomicInteger();
+		AtomicInteger rejectedNb = new AtomicInteger();
+		CountDownLatch start = new CountDownLatch(1);
+		ExecutorService pool = Executors.newFixedThreadPool(THREAD_NB);
+		try {
+			List<Future<?>> futures = new ArrayList<Future<?>>(THREAD_NB);
+			for (int t = 0; t < THREAD_NB; t++) {
+				List<String> order = new ArrayList<String>(names);
+				Collections.shuffle(order, new Random(t));
+				futures.add(pool.submit(() -> {
+					start.await();
+					for (String name : order) {
+						try {
+							User u = new User(name, "pass" + name);
+							created.put(name, u);
+							successNb.incrementAndGet();
+						} catch (IllegalArgumentException e) {
+							rejectedNb.incrementAndGet();
+						}
+					}
+					return null;
+				}));
+			}
+			start.countDown();
+			for (Future<?> f : futures) {
+				f.get();
+			}
+		} finally {
+			pool.shutdown();
+			assertTrue(pool.awaitTermination(1, TimeUnit.MINUTES));
+		}
+
+		assertEquals(NAME_NB, successNb.get());
+		assertEquals(NAME_NB * (THREAD_NB - 1), rejectedNb.get());
+		assertEquals(oldUserNb + NAME_NB, User.getAllUser().size());
+		Set<Integer> ids = new HashSet<Integer>();
+		for (String name : names) {
+			assertTrue(User.hasUser(name));
+			User u = created.get(name);
+			assertSame(u, User.getUser(name));
+			// Identifiants distincts, publiés une fois l'User construit
+			assertTrue(ids.add(u.getId()));
+			assertSame(u, User.getUser(u.getId()));
+		}
+	}
+}